@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.benchmarks;
+
+import be.fgov.bosa.shaclvalidator.Validator;
+import be.fgov.bosa.shaclvalidator.store.StoreFactory;
+import be.fgov.bosa.shaclvalidator.store.StoreSettings;
+import be.fgov.bosa.shaclvalidator.store.StoreType;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.rdf4j.model.Model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bulk validation of a large, failing file with and without a global limit on the number of results (fail-fast)
+ * 
+ * @author Bart Hanssens
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FailFastBenchmark {
+	@Param({"10000", "100000"})
+	public int datasets;
+
+	@Param({"10"})
+	public int violationEvery;
+
+	@Param({"-1", "1", "100"})
+	public long limit;
+
+	@Param({"MEMORY"})
+	public StoreType store;
+
+	private Path dir;
+	private URL data;
+	private Validator validator;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("bench-failfast");
+		data = SyntheticData.data(dir, datasets, violationEvery);
+		StoreSettings settings = new StoreSettings(store, null, StoreFactory.DEFAULT_INDEXES, 0, 0, false);
+		validator = new Validator(100, settings);
+		validator.loadShapes(new URL[] { SyntheticData.shapes(dir, 1) });
+		validator.setResultsLimit(limit);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		validator.close();
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Benchmark
+	public Model validate() throws IOException {
+		return validator.validate(data, Optional.of("text/turtle"));
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.benchmarks;
+
+import be.fgov.bosa.shaclvalidator.Validator;
+import be.fgov.bosa.shaclvalidator.helper.ChunkedParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading N-Triples, sequentially and in parallel chunks, depending on the number of threads
+ * 
+ * @author Bart Hanssens
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ParseBenchmark {
+	@Param({"100000"})
+	public int datasets;
+
+	@Param({"1", "2", "4", "8"})
+	public int threads;
+
+	private Path dir;
+	private URL data;
+	private Validator validator;
+
+	/**
+	 * Counting RDF handler
+	 */
+	private static class Counter extends AbstractRDFHandler {
+		long count = 0;
+
+		@Override
+		public void handleStatement(Statement st) {
+			count++;
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		dir = Files.createTempDirectory("bench-parse");
+		data = SyntheticData.ntriples(dir, datasets, 10);
+		validator = new Validator(100);
+		validator.loadShapes(new URL[] { SyntheticData.shapes(dir, 1) });
+		validator.setParseThreads(threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		validator.close();
+		FileUtils.deleteDirectory(dir.toFile());
+	}
+
+	@Benchmark
+	public long parse() throws IOException {
+		Counter counter = new Counter();
+		if (threads == 1) {
+			RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES);
+			parser.setRDFHandler(counter);
+			try (InputStream is = data.openStream()) {
+				parser.parse(is);
+			}
+		} else {
+			new ChunkedParser(threads, 1024 * 1024).parse(ChunkedParser.toPath(data), RDFFormat.NTRIPLES, 
+															Validator.parserConfig(true), counter);
+		}
+		return counter.count;
+	}
+
+	@Benchmark
+	public Model validate() throws IOException {
+		return validator.validate(data, Optional.of(RDFFormat.NTRIPLES.getDefaultMIMEType()));
+	}
+}
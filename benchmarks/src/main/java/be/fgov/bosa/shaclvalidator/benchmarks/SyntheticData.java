@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+
+/**
+ * Generate synthetic DCAT-AP data and SHACL shapes
+ * 
+ * @author Bart Hanssens
+ */
+public class SyntheticData {
+	private final static String PREFIXES = """
+		@prefix dcat: <http://www.w3.org/ns/dcat#> .
+		@prefix dct: <http://purl.org/dc/terms/> .
+		@prefix sh: <http://www.w3.org/ns/shacl#> .
+		@prefix ex: <http://example.com/> .
+		
+		""";
+
+	private final static String[] THEMES = { "AGRI", "ECON", "EDUC", "ENER", "ENVI", "GOVE", "HEAL", 
+											"INTR", "JUST", "REGI", "SOCI", "TECH", "TRAN" };
+	private final static String[] TYPES = { "CSV", "JSON", "XML", "PDF", "HTML" };
+
+	/**
+	 * Write a DCAT-AP catalog, with every Nth dataset missing a description and a license
+	 * 
+	 * @param dir directory
+	 * @param datasets number of datasets
+	 * @param violationEvery every Nth dataset has issues, 0 for none
+	 * @return location of the Turtle file
+	 * @throws IOException 
+	 */
+	public static URL data(Path dir, int datasets, int violationEvery) throws IOException {
+		Path p = dir.resolve("data-" + datasets + "-" + violationEvery + ".ttl");
+
+		try (Writer w = Files.newBufferedWriter(p)) {
+			w.write(PREFIXES);
+			w.write("ex:catalog a dcat:Catalog ; dct:title \"Catalog\"@en .\n");
+			for (int i = 0; i < datasets; i++) {
+				boolean invalid = violationEvery > 0 && (i % violationEvery == 0);
+				w.write("ex:catalog dcat:dataset ex:dataset-" + i + " .\n");
+				w.write("ex:dataset-" + i + " a dcat:Dataset ; dct:title \"Dataset " + i + "\"@en ;\n");
+				if (!invalid) {
+					w.write("\tdct:description \"Description of dataset " + i + "\"@en ;\n");
+				}
+				w.write("\tdct:identifier \"id-" + i + "\" ;\n");
+				w.write("\tdcat:theme <http://publications.europa.eu/resource/authority/data-theme/" 
+						+ THEMES[i % THEMES.length] + "> ;\n");
+				w.write("\tdcat:distribution ex:distribution-" + i + " .\n");
+				w.write("ex:distribution-" + i + " a dcat:Distribution ;\n");
+				w.write("\tdcat:accessURL <http://example.com/access/" + i + "> ;\n");
+				w.write("\tdcat:downloadURL <http://example.com/download/" + i + "> ;\n");
+				if (!invalid) {
+					w.write("\tdct:license <http://publications.europa.eu/resource/authority/licence/CC_BY_4_0> ;\n");
+				}
+				w.write("\tdcat:mediaType <http://www.iana.org/assignments/media-types/text/" 
+						+ TYPES[i % TYPES.length] + "> .\n");
+			}
+		}
+		return p.toUri().toURL();
+	}
+
+	/**
+	 * Write SHACL shapes, including the quirks of the EU DCAT-AP shapes (sh:name on node shapes, empty properties)
+	 * 
+	 * @param dir directory
+	 * @param copies number of copies of the shapes (with different IRIs)
+	 * @return location of the Turtle file
+	 * @throws IOException 
+	 */
+	public static URL shapes(Path dir, int copies) throws IOException {
+		Path p = dir.resolve("shapes-" + copies + ".ttl");
+
+		try (Writer w = Files.newBufferedWriter(p)) {
+			w.write(PREFIXES);
+			for (int i = 0; i < copies; i++) {
+				w.write("ex:DatasetShape-" + i + " a sh:NodeShape ; sh:name \"Dataset\" ; sh:targetClass dcat:Dataset ;\n");
+				w.write("\tsh:property [ sh:path dct:title ; sh:minCount 1 ] ,\n");
+				w.write("\t\t[ sh:path dct:description ; sh:minCount 1 ] ,\n");
+				w.write("\t\t[ sh:path dct:identifier ; sh:maxCount 1 ; sh:severity sh:Warning ] ,\n");
+				w.write("\t\t[ sh:path dcat:theme ; sh:nodeKind sh:IRI ] ,\n");
+				w.write("\t\t[ sh:path dcat:distribution ; sh:class dcat:Distribution ] ,\n");
+				w.write("\t\t[ ] .\n");
+				w.write("ex:DistributionShape-" + i + " a sh:NodeShape ; sh:name \"Distribution\" ; sh:targetClass dcat:Distribution ;\n");
+				w.write("\tsh:property [ sh:path dcat:accessURL ; sh:minCount 1 ; sh:nodeKind sh:IRI ] ,\n");
+				w.write("\t\t[ sh:path dcat:mediaType ; sh:maxCount 1 ] ,\n");
+				w.write("\t\t[ sh:path dct:license ; sh:minCount 1 ; sh:severity sh:Info ] .\n");
+			}
+		}
+		return p.toUri().toURL();
+	}
+
+	/**
+	 * Write a DCAT-AP catalog as N-Triples
+	 * 
+	 * @param dir directory
+	 * @param datasets number of datasets
+	 * @param violationEvery every Nth dataset has issues, 0 for none
+	 * @return location of the N-Triples file
+	 * @throws IOException 
+	 */
+	public static URL ntriples(Path dir, int datasets, int violationEvery) throws IOException {
+		URL turtle = data(dir, datasets, violationEvery);
+		Path p = dir.resolve("data-" + datasets + "-" + violationEvery + ".nt");
+
+		try (InputStream is = turtle.openStream();
+			OutputStream os = new BufferedOutputStream(Files.newOutputStream(p))) {
+			Rio.write(Rio.parse(is, RDFFormat.TURTLE), os, RDFFormat.NTRIPLES);
+		}
+		return p.toUri().toURL();
+	}
+}
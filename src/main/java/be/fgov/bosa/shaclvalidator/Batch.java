@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator;
+
+import be.fgov.bosa.shaclvalidator.dao.BatchResult;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FilenameUtils;
+
+/**
+ * Helper methods for validating multiple data files in one run
+ * 
+ * @author Bart Hanssens
+ */
+public class Batch {
+	public final static String NAME = "{name}";
+	public final static String INDEX = "{index}";
+
+	private final static String WILDCARDS = "*?[{";
+
+	/**
+	 * Get the position of the first wildcard character, checked before creating a path
+	 * since some file systems (e.g. Windows) do not allow these characters in a path.
+	 * 
+	 * @param str string
+	 * @return position or -1 if there is no wildcard
+	 */
+	private static int wildcard(String str) {
+		for (int i = 0; i < str.length(); i++) {
+			if (WILDCARDS.indexOf(str.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Convert a line in a manifest to a URL
+	 * 
+	 * @param line URL or local file, relative to the manifest
+	 * @param dir directory of the manifest
+	 * @return URL
+	 * @throws IOException 
+	 */
+	private static URL toURL(String line, Path dir) throws IOException {
+		if (line.contains("://") || line.startsWith("file:")) {
+			return URI.create(line).toURL();
+		}
+		return dir.resolve(line).toAbsolutePath().normalize().toUri().toURL();
+	}
+
+	/**
+	 * Read a manifest file, containing one URL or local file per line.
+	 * Empty lines and lines starting with # are ignored.
+	 * 
+	 * @param manifest manifest file
+	 * @return list of locations
+	 * @throws IOException 
+	 */
+	private static List<URL> readManifest(Path manifest) throws IOException {
+		Path dir = manifest.toAbsolutePath().getParent();
+		List<URL> urls = new ArrayList<>();
+
+		for (String line: Files.readAllLines(manifest)) {
+			line = line.strip();
+			if (!line.isEmpty() && !line.startsWith("#")) {
+				urls.add(toURL(line, dir));
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * List files in a directory, or matching a glob pattern (e.g. data/*.nt)
+	 * 
+	 * @param pattern directory or glob pattern
+	 * @return sorted list of locations
+	 * @throws IOException when the directory does not exist or no files match
+	 */
+	private static List<URL> listFiles(String pattern) throws IOException {
+		String str = pattern.replace('\\', '/');
+		int wildcard = wildcard(str);
+		Path dir;
+		String glob;
+
+		if (wildcard < 0) {
+			dir = Path.of(str);
+			glob = "*";
+		} else {
+			// base directory is everything before the first segment containing a wildcard
+			int slash = str.lastIndexOf('/', wildcard);
+			dir = (slash < 0) ? Path.of(".") : Path.of(str.substring(0, Math.max(slash, 1)));
+			glob = str.substring(slash + 1);
+		}
+		if (!Files.isDirectory(dir)) {
+			throw new IOException("Directory not found: " + dir);
+		}
+
+		Path base = dir;
+		PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+		List<URL> urls = new ArrayList<>();
+
+		try (Stream<Path> files = Files.walk(base)) {
+			for (Path p: files.filter(Files::isRegularFile)
+								.filter(f -> matcher.matches(base.relativize(f)))
+								.sorted()
+								.toList()) {
+				urls.add(p.toAbsolutePath().normalize().toUri().toURL());
+			}
+		}
+		if (urls.isEmpty()) {
+			throw new IOException("No data files found for " + pattern);
+		}
+		return urls;
+	}
+
+	/**
+	 * Get the list of data files, either from a manifest file, a directory or a glob pattern
+	 * 
+	 * @param spec manifest file, directory or glob pattern
+	 * @return list of locations
+	 * @throws IOException when no data files are found
+	 */
+	public static List<URL> inputs(String spec) throws IOException {
+		if (wildcard(spec) < 0 && Files.isRegularFile(Path.of(spec))) {
+			List<URL> urls = readManifest(Path.of(spec));
+			if (urls.isEmpty()) {
+				throw new IOException("No data files found in manifest " + spec);
+			}
+			return urls;
+		}
+		return listFiles(spec);
+	}
+
+	/**
+	 * Check if the file name of a report contains a placeholder for the data file
+	 * 
+	 * @param report report file name
+	 * @return true if a placeholder is present
+	 */
+	public static boolean isTemplate(Path report) {
+		String str = report.toString();
+		return str.contains(NAME) || str.contains(INDEX);
+	}
+
+	/**
+	 * Get the file name of the report for a data file, replacing {name} with the base name of the data file
+	 * and {index} with the index of the data file in the batch.
+	 * 
+	 * @param report report file name, possibly containing placeholders
+	 * @param data location of the data file
+	 * @param index index of the data file
+	 * @return report file name
+	 */
+	public static Path reportPath(Path report, URL data, int index) {
+		String name = FilenameUtils.getBaseName(data.getPath());
+		return Path.of(report.toString()
+						.replace(NAME, name)
+						.replace(INDEX, String.valueOf(index)));
+	}
+
+	/**
+	 * Get the aggregated status code: -1 if any file could not be processed,
+	 * otherwise the most severe status code of all files.
+	 * 
+	 * @param results list of results
+	 * @return status code
+	 */
+	public static int status(List<BatchResult> results) {
+		int status = 0;
+		for (BatchResult r: results) {
+			if (r.status() < 0) {
+				return r.status();
+			}
+			if (r.status() > 0 && (status == 0 || r.status() < status)) {
+				status = r.status();
+			}
+		}
+		return status;
+	}
+
+	/**
+	 * Print a summary table of the results
+	 * 
+	 * @param results list of results
+	 * @param out output stream
+	 */
+	public static void printSummary(List<BatchResult> results, PrintStream out) {
+		out.println("| Data | Errors | Warnings | Infos | Status | Time (ms) |");
+		out.println("|------|--------|----------|-------|--------|-----------|");
+		for (BatchResult r: results) {
+			out.printf("| %s | %d | %d | %d | %d | %d |%n", 
+				r.data(), r.errors(), r.warnings(), r.infos(), r.status(), r.millis());
+		}
+		out.printf("| Total: %d files | %d | %d | %d | %d | %d |%n", results.size(),
+			results.stream().mapToInt(BatchResult::errors).sum(),
+			results.stream().mapToInt(BatchResult::warnings).sum(),
+			results.stream().mapToInt(BatchResult::infos).sum(),
+			status(results),
+			results.stream().mapToLong(BatchResult::millis).sum());
+	}
+}
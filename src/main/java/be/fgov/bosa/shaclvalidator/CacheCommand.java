@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator;
+
+import be.fgov.bosa.shaclvalidator.cache.ShapesCache;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Inspect or purge the cache of normalized SHACL shapes
+ * 
+ * @author Bart Hanssens
+ */
+@Command(name = "cache", mixinStandardHelpOptions = true, 
+		description = "Inspect or purge the cache of normalized SHACL shapes.")
+public class CacheCommand implements Callable<Integer> {
+    @Option(names = "--shapesCache", description = "Directory of the shapes cache", required = true)
+    Path dir;
+
+    @Option(names = "--list", description = "List the cached shapes")
+    boolean list;
+
+    @Option(names = "--purge", description = "Remove all cached shapes")
+    boolean purge;
+
+	@Override
+	public Integer call() throws Exception {
+		ShapesCache cache = new ShapesCache(dir);
+
+		if (list || !purge) {
+			List<ShapesCache.Entry> entries = cache.list();
+			for (ShapesCache.Entry e: entries) {
+				System.out.printf("%s\t%s\t%d\t%s%n", e.key(), e.created(), e.size(), e.sources());
+			}
+			System.out.printf("%d entries%n", entries.size());
+		}
+		if (purge) {
+			System.out.printf("Removed %d entries%n", cache.purge());
+		}
+		return 0;
+	}
+}
@@ -0,0 +1,499 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator;
+
+import be.fgov.bosa.shaclvalidator.helper.Decompressor;
+import be.fgov.bosa.shaclvalidator.helper.ExternalSort;
+import be.fgov.bosa.shaclvalidator.helper.RunMetrics;
+import be.fgov.bosa.shaclvalidator.helper.Util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.rdf4j.common.exception.ValidationException;
+import org.eclipse.rdf4j.common.transaction.IsolationLevels;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.util.Values;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDF4J;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.RDFHandlerWrapper;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
+import org.eclipse.rdf4j.sail.shacl.ShaclSail;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Validate only the changes compared to the previous run, using a persistent (native) store.
+ * 
+ * The state directory contains the data of the previous run as sorted N-Triples, and the previous report.
+ * The new data is sorted as well, so the added and removed statements can be found by merging both files.
+ * Only these changes are applied to the store, using the transactional validation of the SHACL Sail,
+ * and the new results are merged with the results of the previous report for the nodes that were not affected.
+ * 
+ * The SHACL Sail validates without a limit on the number of results, so the stored report contains all results
+ * and results of unchanged nodes can be kept in the next run: the limit is only applied to the returned report.
+ * 
+ * Blank nodes in the data get a new ID every time they are parsed, so the same label in different documents 
+ * (e.g. files in a zip archive) is not the same node, and statements using them are always considered as changed.
+ * 
+ * @author Bart Hanssens
+ */
+public class IncrementalValidator {
+	private final static Logger LOG = LoggerFactory.getLogger(IncrementalValidator.class);
+
+	private final static String SNAPSHOT = "data.nt";
+	private final static String REPORT = "report.brf";
+	private final static int RUN_SIZE = 500_000;
+
+	private final Validator validator;
+	private final Path dir;
+	private final int maxErrors;
+	private RunMetrics metrics = RunMetrics.DISABLED;
+
+	/**
+	 * RDF handler writing statements as N-Triples lines to a sorter.
+	 * Contexts are ignored, since validation does not take them into account.
+	 */
+	private static class LineWriter extends AbstractRDFHandler {
+		private final ExternalSort sorter;
+
+		@Override
+		public void handleStatement(Statement st) {
+			try {
+				sorter.add(NTriplesUtil.toNTriplesString(st.getSubject()) + " " 
+							+ NTriplesUtil.toNTriplesString(st.getPredicate()) + " " 
+							+ NTriplesUtil.toNTriplesString(st.getObject()) + " .");
+			} catch (IOException ioe) {
+				throw new RDFHandlerException(ioe);
+			}
+		}
+
+		LineWriter(ExternalSort sorter) {
+			this.sorter = sorter;
+		}
+	}
+
+	/**
+	 * Get a parser for the sorted N-Triples files, keeping the blank node IDs so they match the ones in the store
+	 * 
+	 * @return parser
+	 */
+	private static RDFParser parser() {
+		RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES);
+		parser.setParserConfig(Validator.parserConfig(true));
+		return parser;
+	}
+
+	/**
+	 * Compare two sorted files, writing the lines only in the first one to removed, 
+	 * and the lines only in the second one to added
+	 * 
+	 * @param before previous data
+	 * @param after current data
+	 * @param removed removed statements
+	 * @param added added statements
+	 * @return number of changed lines
+	 * @throws IOException 
+	 */
+	private static long diff(Path before, Path after, Path removed, Path added) throws IOException {
+		long changes = 0;
+		try (BufferedReader rb = Files.newBufferedReader(before, StandardCharsets.UTF_8);
+			BufferedReader ra = Files.newBufferedReader(after, StandardCharsets.UTF_8);
+			Writer wr = Files.newBufferedWriter(removed, StandardCharsets.UTF_8);
+			Writer wa = Files.newBufferedWriter(added, StandardCharsets.UTF_8)) {
+			String b = rb.readLine();
+			String a = ra.readLine();
+			while (b != null || a != null) {
+				int cmp = (b == null) ? 1 : (a == null) ? -1 : b.compareTo(a);
+				if (cmp == 0) {
+					b = rb.readLine();
+					a = ra.readLine();
+					continue;
+				}
+				changes++;
+				if (cmp < 0) {
+					wr.write(b);
+					wr.write('\n');
+					b = rb.readLine();
+				} else {
+					wa.write(a);
+					wa.write('\n');
+					a = ra.readLine();
+				}
+			}
+		}
+		return changes;
+	}
+
+	/**
+	 * Apply the removed and added statements
+	 * 
+	 * @param conn connection
+	 * @param removed removed statements
+	 * @param added added statements
+	 * @param affected set of affected nodes, or null
+	 * @throws IOException 
+	 */
+	private static void update(RepositoryConnection conn, Path removed, Path added, Set<Value> affected) 
+			throws IOException {
+		if (removed != null) {
+			RDFParser parser = parser();
+			parser.setRDFHandler(new AbstractRDFHandler() {
+				@Override
+				public void handleStatement(Statement st) {
+					conn.remove(st);
+					if (affected != null) {
+						affected.add(st.getSubject());
+						affected.add(st.getObject());
+					}
+				}
+			});
+			try (InputStream is = new BufferedInputStream(Files.newInputStream(removed))) {
+				parser.parse(is);
+			}
+		}
+		RDFParser parser = parser();
+		parser.setRDFHandler(new AbstractRDFHandler() {
+			@Override
+			public void handleStatement(Statement st) {
+				conn.add(st);
+				if (affected != null) {
+					affected.add(st.getSubject());
+					affected.add(st.getObject());
+				}
+			}
+		});
+		try (InputStream is = new BufferedInputStream(Files.newInputStream(added))) {
+			parser.parse(is);
+		}
+	}
+
+	/**
+	 * Add the nodes referring, directly or indirectly, to the affected nodes, 
+	 * since their results may change as well (e.g. sh:class, or sh:node on a nested node)
+	 * 
+	 * @param conn connection
+	 * @param affected set of affected nodes
+	 */
+	private static void addReferring(RepositoryConnection conn, Set<Value> affected) {
+		Deque<Value> todo = new ArrayDeque<>(affected);
+		while (!todo.isEmpty()) {
+			Value v = todo.pop();
+			if (v.isResource()) {
+				try (RepositoryResult<Statement> res = conn.getStatements(null, null, v)) {
+					for (Statement st: res) {
+						if (affected.add(st.getSubject())) {
+							todo.push(st.getSubject());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Apply the changes to the store and validate them.
+	 * Changes are kept in the store even when the data does not conform, so they are not validated again.
+	 * 
+	 * @param removed removed statements, or null
+	 * @param added added statements
+	 * @param affected set of affected nodes, or null
+	 * @return report
+	 * @throws IOException 
+	 */
+	private Model apply(Path removed, Path added, Set<Value> affected) throws IOException {
+		Model results = null;
+
+		try (RepositoryConnection conn = validator.getRepository().getConnection()) {
+			try {
+				if (removed == null) {
+					conn.begin(IsolationLevels.NONE, ShaclSail.TransactionSettings.ValidationApproach.Bulk);
+				} else {
+					conn.begin(ShaclSail.TransactionSettings.ValidationApproach.Auto);
+				}
+				update(conn, removed, added, affected);
+				conn.commit();
+			} catch (RepositoryException exception) {
+				if (!(exception.getCause() instanceof ValidationException validationException)) {
+					throw exception;
+				}
+				results = validationException.validationReportAsModel();
+				if (conn.isActive()) {
+					conn.rollback();
+				}
+				// keep the (non-conforming) data for the next run
+				conn.begin(ShaclSail.TransactionSettings.ValidationApproach.Disabled);
+				update(conn, removed, added, null);
+				conn.commit();
+			}
+			if (affected != null) {
+				addReferring(conn, affected);
+			}
+		}
+		return (results != null) ? results : Validator.conforming();
+	}
+
+	/**
+	 * Merge the new results with the results of the previous report for nodes that were not affected
+	 * 
+	 * @param previous previous report
+	 * @param results new results
+	 * @param affected affected nodes
+	 * @return merged report
+	 */
+	private static Model merge(Model previous, Model results, Set<Value> affected) {
+		Model merged = new LinkedHashModel(results);
+		results.filter(null, SHACL.FOCUS_NODE, null).objects().forEach(affected::add);
+		
+		Resource report = Models.subject(merged.filter(null, RDF.TYPE, SHACL.VALIDATION_REPORT))
+								.orElseGet(Values::bnode);
+		int kept = 0;
+		for (Statement st: previous.getStatements(null, SHACL.RESULT, null)) {
+			Resource result = (Resource) st.getObject();
+			Optional<Value> focus = Models.object(previous.filter(result, SHACL.FOCUS_NODE, null));
+			if (focus.isPresent() && affected.contains(focus.get())) {
+				continue;
+			}
+			merged.add(report, SHACL.RESULT, result);
+			Util.copyResult(previous, merged, result);
+			kept++;
+		}
+		LOG.info("Kept {} results from previous report", kept);
+
+		if (kept > 0) {
+			merged.remove(report, SHACL.CONFORMS, null);
+			merged.add(report, RDF.TYPE, SHACL.VALIDATION_REPORT);
+			merged.add(report, SHACL.CONFORMS, Values.literal(false));
+		}
+		return merged;
+	}
+
+	/**
+	 * Keep at most the maximum number of results per shape and constraint component
+	 * 
+	 * @param report complete report
+	 * @return limited report
+	 */
+	private Model limit(Model report) {
+		Resource id = Models.subject(report.filter(null, RDF.TYPE, SHACL.VALIDATION_REPORT)).orElse(null);
+		if (maxErrors <= 0 || id == null) {
+			return report;
+		}
+		Model limited = new LinkedHashModel();
+		limited.addAll(report.filter(id, RDF.TYPE, null));
+		limited.addAll(report.filter(id, SHACL.CONFORMS, null));
+
+		Map<String,Integer> counts = new HashMap<>();
+		for (Statement st: report.getStatements(id, SHACL.RESULT, null)) {
+			Resource result = (Resource) st.getObject();
+			String key = Models.object(report.filter(result, SHACL.SOURCE_SHAPE, null)).map(Value::stringValue)
+							.orElse("") + " " 
+						+ Models.object(report.filter(result, SHACL.SOURCE_CONSTRAINT_COMPONENT, null))
+							.map(Value::stringValue).orElse("");
+			if (counts.merge(key, 1, Integer::sum) > maxErrors) {
+				continue;
+			}
+			limited.add(id, SHACL.RESULT, result);
+			Util.copyResult(report, limited, result);
+		}
+		return limited;
+	}
+
+	/**
+	 * Read the previous report
+	 * 
+	 * @return report or empty model
+	 * @throws IOException 
+	 */
+	private Model readReport() throws IOException {
+		Path p = dir.resolve(REPORT);
+		if (!Files.exists(p)) {
+			return new LinkedHashModel();
+		}
+		try (InputStream is = new BufferedInputStream(Files.newInputStream(p))) {
+			return Rio.parse(is, "", RDFFormat.BINARY, Validator.parserConfig(true));
+		}
+	}
+
+	/**
+	 * Write the report, to be merged with the results of the next run
+	 * 
+	 * @param report report
+	 * @throws IOException 
+	 */
+	private void writeReport(Model report) throws IOException {
+		Path p = dir.resolve(REPORT);
+		Path tmp = Files.createTempFile(dir, "report", ".tmp");
+		try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+			Rio.write(report, os, RDFFormat.BINARY);
+		}
+		Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load the SHACL files.
+	 * When the shapes differ from the ones used in the previous run, all data will be validated again.
+	 * 
+	 * @param shacls location of the SHACL file(s)
+	 * @throws IOException 
+	 */
+	public void loadShapes(URL[] shacls) throws IOException {
+		Model shapes = validator.select(validator.parseShapes(shacls));
+
+		// shapes in the store are in the shapes graph
+		Model expected = new LinkedHashModel();
+		shapes.forEach(st -> expected.add(st.getSubject(), st.getPredicate(), st.getObject(), RDF4J.SHACL_SHAPE_GRAPH));
+
+		if (Files.exists(dir.resolve(SNAPSHOT)) && Models.isomorphic(expected, validator.getShapes())) {
+			LOG.info("Shapes did not change, validating changes only");
+			return;
+		}
+		LOG.info("Shapes changed or no previous run, validating all data");
+		validator.loadShapes(shapes);
+		Files.deleteIfExists(dir.resolve(SNAPSHOT));
+		Files.deleteIfExists(dir.resolve(REPORT));
+	}
+
+	/**
+	 * Record the parse, diff and validation phases of the next validations.
+	 * The number of triples is taken from the metrics, counted by the listener passed to the validation.
+	 * 
+	 * @param metrics run metrics, or {@link RunMetrics#DISABLED}
+	 */
+	public void setMetrics(RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Validate an RDF data file (can be a local file or URL), only validating the changes to the previous run.
+	 * Format is optional: when not present the format will be guessed based on the file extension.
+	 * 
+	 * @param location location of the data
+	 * @param fmt RDF format
+	 * @param listener RDF handler receiving every statement, or null
+	 * @return report with violations/warnings
+	 * @throws IOException 
+	 */
+	public Model validate(URL location, Optional<String> fmt, RDFHandler listener) throws IOException {
+		LOG.info("Loading data from {}", location.toString());
+
+		Path current = dir.resolve(SNAPSHOT + ".new");
+		try (ExternalSort sorter = new ExternalSort(dir, RUN_SIZE);
+			RunMetrics.Phase phase = metrics.start("parse")) {
+			RDFHandler handler = new LineWriter(sorter);
+			Decompressor.forEach(location, validator.getHttpCache(), (is, name) -> {
+				RDFParser parser = Rio.createParser(Validator.format(name, fmt));
+				parser.setParserConfig(Validator.parserConfig(false));
+				parser.setRDFHandler(listener == null ? handler : new RDFHandlerWrapper(handler, listener));
+				parser.parse(is);
+			});
+			sorter.sort(current);
+			phase.setTriples(metrics.getTriples());
+		}
+
+		Path previous = dir.resolve(SNAPSHOT);
+		Model report;
+
+		if (!Files.exists(previous)) {
+			try (RunMetrics.Phase phase = metrics.start("shacl")) {
+				phase.setTriples(metrics.getTriples());
+				report = apply(null, current, null);
+			}
+		} else {
+			Path removed = Files.createTempFile(dir, "removed", ".nt");
+			Path added = Files.createTempFile(dir, "added", ".nt");
+			try {
+				long changes;
+				try (RunMetrics.Phase phase = metrics.start("diff")) {
+					changes = diff(previous, current, removed, added);
+					phase.setTriples(metrics.getTriples());
+				}
+				LOG.info("{} statements changed", changes);
+
+				try (RunMetrics.Phase phase = metrics.start("shacl")) {
+					phase.setTriples(changes);
+					Set<Value> affected = new HashSet<>();
+					Model results = apply(removed, added, affected);
+					report = merge(readReport(), results, affected);
+				}
+			} finally {
+				Files.deleteIfExists(removed);
+				Files.deleteIfExists(added);
+			}
+		}
+
+		Files.move(current, previous, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		writeReport(report);
+		return limit(report);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param validator validator using a native store in the state directory, without a limit on the results
+	 * @param dir state directory
+	 * @param maxErrors maximum number of results per shape and constraint component in the returned report
+	 * @throws IOException
+	 */
+	public IncrementalValidator(Validator validator, Path dir, int maxErrors) throws IOException {
+		this.validator = validator;
+		this.dir = Files.createDirectories(dir);
+		this.maxErrors = maxErrors;
+	}
+}
@@ -25,25 +25,65 @@
  */
 package be.fgov.bosa.shaclvalidator;
 
+import be.fgov.bosa.shaclvalidator.cache.HttpCache;
+import be.fgov.bosa.shaclvalidator.cache.ShapesCache;
+import be.fgov.bosa.shaclvalidator.dao.Approximation;
+import be.fgov.bosa.shaclvalidator.dao.BatchResult;
+import be.fgov.bosa.shaclvalidator.dao.PhaseMetric;
+import be.fgov.bosa.shaclvalidator.helper.MemoryBudget;
+import be.fgov.bosa.shaclvalidator.helper.RunMetrics;
+import be.fgov.bosa.shaclvalidator.jfr.ReportEvent;
+import be.fgov.bosa.shaclvalidator.jfr.ShapeResultsEvent;
 import be.fgov.bosa.shaclvalidator.reports.Report;
 import be.fgov.bosa.shaclvalidator.reports.ReportFactory;
+import be.fgov.bosa.shaclvalidator.reports.ResultSampler;
+import be.fgov.bosa.shaclvalidator.reports.ReportIndex;
+import be.fgov.bosa.shaclvalidator.shapes.Normalizer;
+import be.fgov.bosa.shaclvalidator.shapes.ShapeSelector;
+import be.fgov.bosa.shaclvalidator.store.AutoStore;
+import be.fgov.bosa.shaclvalidator.store.StoreFactory;
+import be.fgov.bosa.shaclvalidator.store.StoreSettings;
+import be.fgov.bosa.shaclvalidator.store.StoreType;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
 import org.apache.commons.io.FilenameUtils;
 
+import org.eclipse.rdf4j.common.exception.RDF4JException;
 import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+import org.eclipse.rdf4j.rio.RDFHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Model.CommandSpec;
 import picocli.CommandLine.Option;
+import picocli.CommandLine.ParameterException;
+import picocli.CommandLine.Spec;
 
 /**
  * Command-line validator
@@ -51,25 +91,64 @@ import picocli.CommandLine.Option;
  * @author Bart Hanssens
  */
 @Command(name = "SHACL Validator", mixinStandardHelpOptions = true, version = "1.0",
-         description = "Validates an RDF file using a (Turtle) SHACL file.")
+         description = "Validates an RDF file using a (Turtle) SHACL file.",
+		 subcommands = { CacheCommand.class, ServeCommand.class })
 public class Main implements Callable<Integer> {
 	private final static Logger LOG = LoggerFactory.getLogger(Main.class);
 
-    @Option(names = "--data", description = "Data file location (URL or local file)", required = true)
+	@Spec
+	CommandSpec spec;
+
+    @Option(names = "--data", description = "Data file location (URL or local file)")
     URL data;
 
+    @Option(names = "--batch", description = "Validate multiple data files: manifest file (one URL or file per line), directory or glob pattern")
+    String batch;
+
+    @Option(names = "--threads", description = "Number of data files validated in parallel in batch mode (default: ${DEFAULT-VALUE})",
+			defaultValue = "1")
+    int threads;
+
+    @Option(names = "--virtualThreads", description = "Use virtual threads for parallel validation")
+    boolean virtualThreads;
+
+    @Option(names = "--memoryBudget", description = "Memory budget in MB for parallel validation (default: 80% of max heap)")
+    Optional<Integer> memoryBudget;
+
     @Option(names = "--format", description = "Data file format")
     Optional<String> format;
 
-    @Option(names = "--shacl", description = "SHACL file(s) location (URL or local file)", required = true)
+    @Option(names = "--shacl", description = "SHACL file(s) location (URL or local file)")
     URL[] shacl;
 
-    @Option(names = "--report", description = "Write report to this file(s), format can be HTML, TTL or MD")
+    @Option(names = "--report", description = "Write report to this file(s), format can be HTML, TTL, MD, JSON or NDJSON, optionally gzipped (.gz). In batch mode, {name} and {index} are replaced by the name and index of the data file")
     Path[] reports;
 
+    @Option(names = "--streamReports", description = "Write reports incrementally, reducing memory usage for large reports")
+    boolean streamReports;
+
+    @Option(names = "--metrics", description = "Write the timing and resource usage of each phase to this JSON file. In batch mode, {name} and {index} are replaced by the name and index of the data file")
+    Path metricsFile;
+
+    @Option(names = "--jfr", description = "Record the run using Java Flight Recorder, and write the recording to this file")
+    Optional<Path> jfr;
+
     @Option(names = "--maxErrors", description = "Maximum number of reports to report")
     Optional<Integer> maxErrors;
 
+    @Option(names = "--exactTotals", description = "Report the exact number of results per shape and component, keeping --maxErrors results as examples")
+    boolean exactTotals;
+
+    @Option(names = "--totalsLimit", description = "Maximum number of results counted per shape and component with --exactTotals, bounding the memory used (default: ${DEFAULT-VALUE})",
+			defaultValue = "100000")
+    int totalsLimit;
+
+    @Option(names = "--failFast", description = "Stop validating when this number of results has been found, and stop a batch at the first file with results")
+    Optional<Integer> failFast;
+
+    @Option(names = "--firstResult", description = "Stop validating at the first result of any severity (violation, warning or info), same as --failFast=1")
+    boolean firstResult;
+
     @Option(names = "--countClasses", description = "Count number of classes")
     boolean countClasses;
 
@@ -79,52 +158,529 @@ public class Main implements Callable<Integer> {
     @Option(names = "--countValues", description = "Count number of values for one or more properties")
     String[] countValues;
 
+    @Option(names = "--countCoverage", description = "Count number of instances of each class using each property")
+    boolean countCoverage;
+
+    @Option(names = "--exactCounting", description = "Count values off-heap, spilling to disk when --countMemory is exceeded")
+    boolean exactCounting;
+
+    @Option(names = "--countMemory", description = "Memory in MB for counting values with --exactCounting (default: ${DEFAULT-VALUE})",
+			defaultValue = "256")
+    int countMemory;
+
+    @Option(names = "--approximate", description = "Estimate the number of distinct values and the most frequent values in bounded memory, instead of counting all values")
+    boolean approximate;
+
+    @Option(names = "--distinctError", description = "Relative standard error of the estimated number of distinct values (default: ${DEFAULT-VALUE})",
+			defaultValue = "0.01")
+    double distinctError;
+
+    @Option(names = "--topK", description = "Number of most frequent values reported per property in approximate mode (default: ${DEFAULT-VALUE})",
+			defaultValue = "20")
+    int topK;
+
+    @Option(names = "--topError", description = "Maximum overestimation of a value count, relative to the number of values of the property (default: ${DEFAULT-VALUE})",
+			defaultValue = "0.001")
+    double topError;
+
+    @Option(names = "--store", description = "Store used for validation: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})", 
+			defaultValue = "memory")
+    StoreType store;
+
+    @Option(names = "--storeBudget", description = "Heap budget in MB of the auto store, switching to a native store when exceeded (default: 60% of max heap)")
+    Optional<Integer> storeBudget;
+
+    @Option(names = "--storeDir", description = "Directory of the native store, a temporary subdirectory is used unless --storeKeep is set (default: temporary directory)")
+    Optional<Path> storeDir;
+
+    @Option(names = "--storeIndexes", description = "Triple indexes of the native store (default: ${DEFAULT-VALUE})", 
+			defaultValue = StoreFactory.DEFAULT_INDEXES)
+    String storeIndexes;
+
+    @Option(names = "--storeValueCache", description = "Value cache size of the native store")
+    Optional<Integer> storeValueCache;
+
+    @Option(names = "--storeValueIDCache", description = "Value ID cache size of the native store")
+    Optional<Integer> storeValueIDCache;
+
+    @Option(names = "--storeKeep", description = "Keep the native store directory after validation")
+    boolean storeKeep;
+
+    @Option(names = "--shapesCache", description = "Directory for caching normalized SHACL shapes")
+    Optional<Path> shapesCache;
+
+    @Option(names = "--httpCache", description = "Directory for caching remote data and SHACL files")
+    Optional<Path> httpCache;
+
+    @Option(names = "--httpCacheSize", description = "Maximum size of the HTTP cache in MB (default: ${DEFAULT-VALUE})",
+			defaultValue = "1024")
+    long httpCacheSize;
+
+    @Option(names = "--normalize", description = "Normalization passes applied to the SHACL shapes, in order: names, emptyProperties, dedup (default: ${DEFAULT-VALUE})",
+			split = ",", defaultValue = Normalizer.DEFAULT)
+    String[] normalize;
+
+    @Option(names = "--includeShapes", description = "Only validate these shapes: IRI of a shape, class:<IRI> of a target class or severity:violation|warning|info",
+			split = ",")
+    String[] includeShapes;
+
+    @Option(names = "--excludeShapes", description = "Do not validate these shapes: IRI of a shape, class:<IRI> of a target class or severity:violation|warning|info",
+			split = ",")
+    String[] excludeShapes;
+
+    @Option(names = "--parseThreads", description = "Number of threads for parsing local N-Triples and N-Quads files (default: number of processors)")
+    Optional<Integer> parseThreads;
+
+    @Option(names = "--shards", description = "Partition a single data file by subject into shards, validated in parallel (default: ${DEFAULT-VALUE})",
+			defaultValue = "1")
+    int shards;
+
+    @Option(names = "--incremental", description = "Keep the data and report in this directory, and only validate the changes in the next run")
+    Optional<Path> incremental;
+
+	// loading the shapes is shared by all data files
+	private List<PhaseMetric> shapesMetrics = List.of();
+	// shapes that were not selected for validation
+	private List<String> skippedShapes = List.of();
+	// total number of results in fail-fast mode
+	private long resultsLimit = -1;
+
+	/**
+	 * Validation of a data file, either by a validator or an incremental validator
+	 */
+	@FunctionalInterface
+	private interface Validation {
+		Model validate(URL location, Optional<String> format, RDFHandler listener) throws IOException;
+	}
+
 	/**
 	 * Write errors and statistics, if any
 	 * 
 	 * @param results
 	 * @param stats
+	 * @param location location of the data
+	 * @param index index of the data file (in batch mode)
+	 * @param metrics run metrics, each report contains the phases recorded before writing it
 	 * @throws IOException
-	 * @return status code
 	 */
-	private void writeReports(Model results, Map<String,Object> stats) throws IOException {
-		for(Path report: reports) {
+	private void writeReports(Model results, Map<String,Object> stats, URL location, int index, 
+			RunMetrics metrics) throws IOException {
+		ShapeResultsEvent shapeEvent = new ShapeResultsEvent();
+		if (reports == null && !shapeEvent.isEnabled()) {
+			return;
+		}
+		ReportIndex reportIndex = new ReportIndex(results);
+		if (shapeEvent.isEnabled()) {
+			recordShapeResults(reportIndex, location);
+		}
+		if (reports == null) {
+			return;
+		}
+		long count = results.filter(null, SHACL.RESULT, null).size();
+
+		for(Path template: reports) {
+			Path report = Batch.reportPath(template, location, index);
 			LOG.info("Writing report to {}", report);
-			String ext = FilenameUtils.getExtension(report.toString());
+			String name = report.toString();
+			boolean gzip = name.endsWith(".gz");
+			String ext = FilenameUtils.getExtension(gzip ? FilenameUtils.removeExtension(name) : name);
 			
-			Report tmpl = ReportFactory.createReport(ext);
-			tmpl.reportValidation(results, data, shacl);
-			tmpl.reportStatistics(stats);
+			ReportEvent event = new ReportEvent();
+			event.begin();
+			try (RunMetrics.Phase phase = metrics.start("report " + report.getFileName())) {
+				Report tmpl = ReportFactory.createReport(ext, streamReports);
+				tmpl.reportValidation(reportIndex, location, shacl);
+				tmpl.reportStatistics(stats);
+				tmpl.reportSkippedShapes(skippedShapes);
+				tmpl.reportMetrics(metrics.getPhases());
+
+				try(OutputStream os = Files.newOutputStream(report);
+					Writer w = new BufferedWriter(new OutputStreamWriter(gzip ? new GZIPOutputStream(os) : os, 
+																		StandardCharsets.UTF_8))) {
+					tmpl.write(w);					
+				}
+			}
+			event.end();
+			if (event.shouldCommit()) {
+				event.file = name;
+				event.format = ext;
+				event.shapes = reportIndex.getShapes().size();
+				event.results = count;
+				event.commit();
+			}
+		}
+	}
+
+	/**
+	 * Record the number of validation results of each shape and constraint component as flight recorder events
+	 * 
+	 * @param index report index
+	 * @param location location of the data
+	 */
+	private static void recordShapeResults(ReportIndex index, URL location) {
+		for (ReportIndex.Group group: index.getGroups()) {
+			List<ReportIndex.Result> results = index.getResults(group);
+			ShapeResultsEvent event = new ShapeResultsEvent();
+			event.source = location.toString();
+			event.shape = group.shape().stringValue();
+			event.component = (group.component() != null) ? group.component().stringValue() : "";
+			event.severity = results.isEmpty() ? "" : results.get(0).severity().getLocalName();
+			event.results = index.getTotal(group);
+			event.commit();
+		}
+	}
+
+	/**
+	 * Start a flight recording, using the profiling settings of the JDK.
+	 * The recording is written to the file when it is stopped.
+	 * 
+	 * @param file file to write the recording to
+	 * @return recording
+	 * @throws IOException
+	 */
+	private static Recording startRecording(Path file) throws IOException {
+		Recording recording;
+		try {
+			recording = new Recording(Configuration.getConfiguration("profile"));
+		} catch (ParseException e) {
+			throw new IOException(e);
+		}
+		recording.setName("shaclvalidator");
+		recording.setDestination(file);
+		recording.setToDisk(true);
+		recording.start();
+		LOG.info("Started flight recording");
+		return recording;
+	}
+
+	/**
+	 * Write the metrics of all phases, if requested
+	 * 
+	 * @param metrics run metrics
+	 * @param location location of the data
+	 * @param index index of the data file (in batch mode)
+	 * @throws IOException
+	 */
+	private void writeMetrics(RunMetrics metrics, URL location, int index) throws IOException {
+		if (metricsFile == null) {
+			return;
+		}
+		Path file = Batch.reportPath(metricsFile, location, index);
+		LOG.info("Writing metrics to {}", file);
+		try (Writer w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			metrics.writeJson(w, location);
+		}
+	}
 
-			try(Writer w = Files.newBufferedWriter(report)) {
-				tmpl.write(w);					
+	/**
+	 * Validate a data file using the shapes already loaded into the validator, 
+	 * and write the reports
+	 * 
+	 * @param validator validator
+	 * @param location location of the data
+	 * @param index index of the data file (in batch mode)
+	 * @return result
+	 * @throws IOException
+	 */
+	private BatchResult validate(Validator validator, URL location, int index) throws IOException {
+		RunMetrics metrics = new RunMetrics();
+		validator.setMetrics(metrics);
+		try {
+			return validate(validator::validate, location, index, metrics);
+		} finally {
+			validator.setMetrics(RunMetrics.DISABLED);
+		}
+	}
+
+	/**
+	 * Validate a data file and write the reports
+	 * 
+	 * @param validation validation
+	 * @param location location of the data
+	 * @param index index of the data file (in batch mode)
+	 * @param metrics run metrics
+	 * @return result
+	 * @throws IOException
+	 */
+	private BatchResult validate(Validation validation, URL location, int index, RunMetrics metrics) 
+			throws IOException {
+		long start = System.currentTimeMillis();
+		metrics.addAll(shapesMetrics);
+
+		Model results;
+		Map<String,Object> stats;
+		int errors;
+		int warnings;
+		int infos;
+		try (StatisticsCollector collector = new StatisticsCollector(countClasses, countProperties, countValues, 
+				approximate ? new Approximation(distinctError, topK, topError) : null,
+				exactCounting ? countMemory * 1024 * 1024 : 0)) {
+			collector.setCoverage(countCoverage);
+			try (RunMetrics.Phase phase = metrics.start("validation")) {
+				results = validation.validate(location, format, 
+												metrics.count(collector.isEnabled() ? collector : null));
+				// count before sampling, so the batch summary uses all results
+				errors = Validator.countErrors(results);
+				warnings = Validator.countWarnings(results);
+				infos = Validator.countInfos(results);
+				if (exactTotals) {
+					results = ResultSampler.sample(results, maxErrors.orElse(1000), totalsLimit);
+				}
+				phase.setTriples(metrics.getTriples());
+			}
+			try (RunMetrics.Phase phase = metrics.start("statistics")) {
+				stats = collector.getStatistics();
+				phase.setTriples(collector.isEnabled() ? metrics.getTriples() : 0);
 			}
 		}
+		writeReports(results, stats, location, index, metrics);
+		writeMetrics(metrics, location, index);
+
+		return new BatchResult(location, errors, warnings, infos, Validator.status(results), 
+						System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Validate multiple data files, continuing with the next file when a file could not be processed
+	 * 
+	 * @param validator validator
+	 * @param inputs location of the data files
+	 * @return list of results
+	 */
+	private List<BatchResult> validateBatch(Validator validator, List<URL> inputs) {
+		List<BatchResult> results = new ArrayList<>(inputs.size());
+
+		for (int i = 0; i < inputs.size(); i++) {
+			URL location = inputs.get(i);
+			try {
+				results.add(validate(validator, location, i + 1));
+			} catch (IOException | RDF4JException e) {
+				LOG.error("Could not validate {}: {}", location, e.getMessage());
+				results.add(new BatchResult(location, 0, 0, 0, -1, 0));
+			}
+			if (resultsLimit > 0 && results.getLast().status() != 0) {
+				LOG.info("Stopping at {}, skipping {} files", location, inputs.size() - i - 1);
+				break;
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Get the maximum number of results per constraint reported by the SHACL Sail.
+	 * In exact totals mode, the results are needed for counting, and sampled afterwards.
+	 * 
+	 * @return maximum number of results
+	 */
+	private int limitPerConstraint() {
+		return exactTotals ? totalsLimit : maxErrors.orElse(1000);
+	}
+
+	/**
+	 * Get the heap budget of the auto store
+	 * 
+	 * @return number of bytes
+	 */
+	private long storeBudgetBytes() {
+		return storeBudget.map(mb -> mb * 1024L * 1024L).orElse(AutoStore.defaultBudget());
+	}
+
+	/**
+	 * Validate multiple data files in parallel, each validator in the pool having its own SHACL Sail.
+	 * Results are returned in the same order as the input, regardless of the order in which they were validated.
+	 * 
+	 * @param shapes shapes shared by all validators
+	 * @param settings store settings
+	 * @param inputs location of the data files
+	 * @param cache HTTP cache or null
+	 * @return list of results
+	 * @throws InterruptedException
+	 */
+	private List<BatchResult> validateParallel(Model shapes, StoreSettings settings, List<URL> inputs,
+			HttpCache cache) throws InterruptedException {
+		int budget = memoryBudget.orElse((int) (Runtime.getRuntime().maxMemory() * 0.8 / (1024 * 1024)));
+		MemoryBudget memory = new MemoryBudget(budget, threads);
+		LOG.info("Validating with {} threads, memory budget {} MB", threads, budget);
+
+		List<Future<BatchResult>> futures = new ArrayList<>(inputs.size());
+
+		try (ValidatorPool pool = new ValidatorPool(threads, shapes, limitPerConstraint(), settings);
+			ExecutorService executor = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+													: Executors.newFixedThreadPool(threads)) {
+			pool.setHttpCache(cache);
+			pool.setResultsLimit(resultsLimit);
+			pool.setStoreBudget(storeBudgetBytes() / threads);
+			for (int i = 0; i < inputs.size(); i++) {
+				URL location = inputs.get(i);
+				int index = i + 1;
+
+				futures.add(executor.submit(() -> {
+					int mb = memory.acquire(location);
+					try {
+						Validator validator = pool.acquire();
+						try {
+							return validate(validator, location, index);
+						} finally {
+							pool.release(validator);
+						}
+					} catch (IOException | RDF4JException e) {
+						LOG.error("Could not validate {}: {}", location, e.getMessage());
+						return new BatchResult(location, 0, 0, 0, -1, 0);
+					} finally {
+						memory.release(mb);
+					}
+				}));
+			}
+
+			List<BatchResult> results = new ArrayList<>(inputs.size());
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					results.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					LOG.error("Could not validate {}: {}", inputs.get(i), e.getCause().getMessage());
+					results.add(new BatchResult(inputs.get(i), 0, 0, 0, -1, 0));
+				}
+				if (resultsLimit > 0 && results.getLast().status() != 0) {
+					LOG.info("Stopping at {}, skipping {} files", inputs.get(i), inputs.size() - i - 1);
+					futures.subList(i + 1, futures.size()).forEach(f -> f.cancel(true));
+					break;
+				}
+			}
+			return results;
+		}
 	}
 
 	@Override
     public Integer call() throws Exception {
+		// not marked as required in the annotations, since the subcommands don't need them
+		if ((data == null && batch == null) || shacl == null) {
+			throw new ParameterException(spec.commandLine(), 
+				"Missing required options: --data or --batch, and --shacl");
+		}
+		if (data != null && batch != null) {
+			throw new ParameterException(spec.commandLine(), "Options --data and --batch can't be combined");
+		}
+		if (batch != null && reports != null && !Stream.of(reports).allMatch(Batch::isTemplate)) {
+			throw new ParameterException(spec.commandLine(), 
+				"In batch mode, --report must contain " + Batch.NAME + " or " + Batch.INDEX);
+		}
+		if (batch != null && metricsFile != null && !Batch.isTemplate(metricsFile)) {
+			throw new ParameterException(spec.commandLine(), 
+				"In batch mode, --metrics must contain " + Batch.NAME + " or " + Batch.INDEX);
+		}
+		if (incremental.isPresent() && batch != null) {
+			throw new ParameterException(spec.commandLine(), "Options --incremental and --batch can't be combined");
+		}
+		if (shards > 1 && (batch != null || incremental.isPresent())) {
+			throw new ParameterException(spec.commandLine(), 
+				"Option --shards can't be combined with --batch or --incremental");
+		}
+		if ((failFast.isPresent() || firstResult) && (shards > 1 || incremental.isPresent())) {
+			throw new ParameterException(spec.commandLine(), 
+				"Options --failFast and --firstResult can't be combined with --shards or --incremental");
+		}
+		if (approximate && (distinctError <= 0 || distinctError >= 1 || topError <= 0 || topError >= 1 || topK < 1)) {
+			throw new ParameterException(spec.commandLine(), 
+				"Options --distinctError and --topError must be between 0 and 1, --topK must be at least 1");
+		}
+		if (exactTotals && (failFast.isPresent() || firstResult)) {
+			throw new ParameterException(spec.commandLine(), 
+				"Option --exactTotals can't be combined with --failFast or --firstResult");
+		}
+		if (exactTotals && totalsLimit < maxErrors.orElse(1000)) {
+			throw new ParameterException(spec.commandLine(), "Option --totalsLimit must be at least --maxErrors");
+		}
+		if (approximate && exactCounting) {
+			throw new ParameterException(spec.commandLine(), "Options --approximate and --exactCounting can't be combined");
+		}
+		if (exactCounting && (countMemory < 1 || countMemory > 2047)) {
+			throw new ParameterException(spec.commandLine(), "Option --countMemory must be between 1 and 2047");
+		}
+		if (failFast.isPresent() && failFast.get() < 1) {
+			throw new ParameterException(spec.commandLine(), "Option --failFast must be at least 1");
+		}
+		resultsLimit = firstResult ? 1 : failFast.orElse(-1);
+
+		Normalizer normalizer;
+		ShapeSelector selector;
 		try {
-			Validator validator = new Validator(maxErrors.orElse(1000));
-			Model results = validator.validate(shacl, data, format);
-			Statistics statistics = new Statistics(validator.getRepository());
-			Map<String,Object> stats = statistics.collect(countClasses, countProperties, countValues);
-			writeReports(results, stats);
-			
-			if (Validator.countErrors(results) > 0) {
-				return 1;
+			normalizer = Normalizer.create(normalize);
+			selector = new ShapeSelector(includeShapes, excludeShapes);
+		} catch (IllegalArgumentException e) {
+			throw new ParameterException(spec.commandLine(), e.getMessage());
+		}
+
+		// incremental validation needs a persistent store
+		StoreSettings settings = incremental.isPresent()
+			? new StoreSettings(StoreType.NATIVE, incremental.get().resolve("store"), storeIndexes, 
+									storeValueCache.orElse(0), storeValueIDCache.orElse(0), true)
+			: new StoreSettings(store, storeDir.orElse(null), storeIndexes, 
+									storeValueCache.orElse(0), storeValueIDCache.orElse(0), storeKeep);
+
+		Recording recording = jfr.isPresent() ? startRecording(jfr.get()) : null;
+
+		// incremental validation keeps all results, to be merged with the results of the next run
+		int limit = incremental.isPresent() ? -1 : limitPerConstraint();
+
+		try (Validator validator = new Validator(limit, settings)) {
+			if (shapesCache.isPresent()) {
+				validator.setShapesCache(new ShapesCache(shapesCache.get()));
 			}
-			if (Validator.countWarnings(results) > 0) {
-				return 2;
+			validator.setNormalizer(normalizer);
+			validator.setSelector(selector);
+			if (httpCache.isPresent()) {
+				validator.setHttpCache(new HttpCache(httpCache.get(), httpCacheSize * 1024 * 1024));
 			}
-			if (Validator.countInfos(results) > 0) {
-				return 3;
+			validator.setParseThreads(parseThreads.orElse(Runtime.getRuntime().availableProcessors()));
+			validator.setResultsLimit(resultsLimit);
+			validator.setStoreBudget(storeBudgetBytes());
+
+			RunMetrics shapes = new RunMetrics();
+			if (incremental.isPresent()) {
+				IncrementalValidator incrementalValidator = new IncrementalValidator(validator, incremental.get(), 
+																					limitPerConstraint());
+				try (RunMetrics.Phase phase = shapes.start("shapes")) {
+					incrementalValidator.loadShapes(shacl);
+				}
+				shapesMetrics = shapes.getPhases();
+				skippedShapes = validator.getSkippedShapes();
+				RunMetrics metrics = new RunMetrics();
+				incrementalValidator.setMetrics(metrics);
+				return validate(incrementalValidator::validate, data, 0, metrics).status();
 			}
+			try (RunMetrics.Phase phase = shapes.start("shapes")) {
+				validator.loadShapes(shacl);
+			}
+			shapesMetrics = shapes.getPhases();
+			skippedShapes = validator.getSkippedShapes();
+
+			if (batch == null && shards > 1) {
+				ShardedValidator shardedValidator = new ShardedValidator(validator, shards, limitPerConstraint(), settings);
+				RunMetrics metrics = new RunMetrics();
+				shardedValidator.setMetrics(metrics);
+				return validate(shardedValidator::validate, data, 0, metrics).status();
+			}
+			if (batch == null) {
+				return validate(validator, data, 0).status();
+			}
+
+			List<URL> inputs = Batch.inputs(batch);
+			LOG.info("Validating {} files", inputs.size());
+			List<BatchResult> results = (threads > 1) 
+				? validateParallel(validator.getShapes(), settings, inputs, validator.getHttpCache())
+				: validateBatch(validator, inputs);
+			Batch.printSummary(results, System.out);
+			return Batch.status(results);
 		} catch (IOException e) {
 			LOG.error(e.getMessage());
 			return -1;
+		} finally {
+			if (recording != null) {
+				recording.stop();
+				recording.close();
+				LOG.info("Flight recording written to {}", jfr.get());
+			}
 		}
-		return 0;
 	}
 
 	/**
@@ -133,7 +689,7 @@ public class Main implements Callable<Integer> {
 	 * @param args
 	 */
     public static void main(String[] args) {
-        int exitCode = new CommandLine(new Main()).execute(args);
+        int exitCode = new CommandLine(new Main()).setCaseInsensitiveEnumValuesAllowed(true).execute(args);
 		System.exit(exitCode);
     }
 }
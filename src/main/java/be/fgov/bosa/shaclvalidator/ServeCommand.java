@@ -0,0 +1,409 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator;
+
+import be.fgov.bosa.shaclvalidator.cache.HttpCache;
+import be.fgov.bosa.shaclvalidator.cache.ShapesCache;
+import be.fgov.bosa.shaclvalidator.dao.Approximation;
+import be.fgov.bosa.shaclvalidator.reports.Report;
+import be.fgov.bosa.shaclvalidator.reports.ReportFactory;
+import be.fgov.bosa.shaclvalidator.shapes.Normalizer;
+import be.fgov.bosa.shaclvalidator.store.StoreSettings;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.eclipse.rdf4j.common.exception.RDF4JException;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Long-running HTTP validation service, using the HTTP server built into the JDK.
+ * 
+ * Named sets of shapes are loaded at startup, data is POSTed to /validate?shapes=name&amp;report=html 
+ * 
+ * @author Bart Hanssens
+ */
+@Command(name = "serve", mixinStandardHelpOptions = true, 
+		description = "Run a validation service over HTTP.")
+public class ServeCommand implements Callable<Integer> {
+	private final static Logger LOG = LoggerFactory.getLogger(ServeCommand.class);
+
+    @Option(names = "--host", description = "Host name or IP address to listen on (default: ${DEFAULT-VALUE})",
+			defaultValue = "127.0.0.1")
+    String host;
+
+    @Option(names = "--port", description = "Port to listen on (default: ${DEFAULT-VALUE})", defaultValue = "8080")
+    int port;
+
+    @Option(names = "--shapes", description = "Named SHACL file(s), as name=location. Repeat the name for multiple files",
+			required = true)
+    String[] shapes;
+
+    @Option(names = "--maxConcurrent", description = "Maximum number of concurrent validations (default: number of processors)")
+    Optional<Integer> maxConcurrent;
+
+    @Option(names = "--queue", description = "Maximum number of requests waiting for validation (default: ${DEFAULT-VALUE})",
+			defaultValue = "16")
+    int queue;
+
+    @Option(names = "--maxErrors", description = "Maximum number of reports to report")
+    Optional<Integer> maxErrors;
+
+    @Option(names = "--shapesCache", description = "Directory for caching normalized SHACL shapes")
+    Optional<Path> shapesCache;
+
+    @Option(names = "--httpCache", description = "Directory for caching remote data and SHACL files")
+    Optional<Path> httpCache;
+
+    @Option(names = "--httpCacheSize", description = "Maximum size of the HTTP cache in MB (default: ${DEFAULT-VALUE})",
+			defaultValue = "1024")
+    long httpCacheSize;
+
+    @Option(names = "--normalize", description = "Normalization passes applied to the SHACL shapes, in order: names, emptyProperties, dedup (default: ${DEFAULT-VALUE})",
+			split = ",", defaultValue = Normalizer.DEFAULT)
+    String[] normalize;
+
+	private final Map<String, URL[]> locations = new LinkedHashMap<>();
+	private final Map<String, ValidatorPool> pools = new HashMap<>();
+
+	private Normalizer normalizer;
+	private Semaphore admitted;
+	private Semaphore running;
+
+	/**
+	 * Parse the name=location pairs of the shape sets
+	 * 
+	 * @throws IOException 
+	 */
+	private void parseShapes() throws IOException {
+		Map<String, List<URL>> map = new LinkedHashMap<>();
+		for (String str: shapes) {
+			int eq = str.indexOf('=');
+			if (eq < 1) {
+				throw new IOException("Shapes must be specified as name=location: " + str);
+			}
+			map.computeIfAbsent(str.substring(0, eq), k -> new ArrayList<>())
+				.add(URI.create(str.substring(eq + 1)).toURL());
+		}
+		map.forEach((k, v) -> locations.put(k, v.toArray(URL[]::new)));
+	}
+
+	/**
+	 * Load the shapes and create a pool of (warmed-up) validators for each set of shapes
+	 * 
+	 * @param size size of the pool
+	 * @throws IOException 
+	 * @throws InterruptedException
+	 */
+	private void createPools(int size) throws IOException, InterruptedException {
+		for (Map.Entry<String, URL[]> e: locations.entrySet()) {
+			LOG.info("Loading shapes {}", e.getKey());
+			Model model;
+			try (Validator validator = new Validator(maxErrors.orElse(1000))) {
+				if (shapesCache.isPresent()) {
+					validator.setShapesCache(new ShapesCache(shapesCache.get()));
+				}
+				validator.setNormalizer(normalizer);
+				if (httpCache.isPresent()) {
+					validator.setHttpCache(new HttpCache(httpCache.get(), httpCacheSize * 1024 * 1024));
+				}
+				validator.loadShapes(e.getValue());
+				model = validator.getShapes();
+			}
+			ValidatorPool pool = new ValidatorPool(size, model, maxErrors.orElse(1000), StoreSettings.memory());
+			pool.release(pool.acquire());
+			pools.put(e.getKey(), pool);
+		}
+	}
+
+	/**
+	 * Parse the query string of the request
+	 * 
+	 * @param query query string
+	 * @return map of parameters
+	 */
+	private static Map<String, List<String>> parseQuery(String query) {
+		Map<String, List<String>> params = new HashMap<>();
+		if (query == null) {
+			return params;
+		}
+		for (String param: query.split("&")) {
+			int eq = param.indexOf('=');
+			String key = URLDecoder.decode((eq < 0) ? param : param.substring(0, eq), StandardCharsets.UTF_8);
+			String val = (eq < 0) ? "" : URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8);
+			params.computeIfAbsent(key, k -> new ArrayList<>()).add(val);
+		}
+		return params;
+	}
+
+	/**
+	 * Get first value of a parameter
+	 * 
+	 * @param params parameters
+	 * @param key name of the parameter
+	 * @param def default value
+	 * @return value or default value
+	 */
+	private static String param(Map<String, List<String>> params, String key, String def) {
+		List<String> vals = params.get(key);
+		return (vals == null || vals.isEmpty()) ? def : vals.get(0);
+	}
+
+	/**
+	 * Send a plain text response
+	 * 
+	 * @param exchange HTTP exchange
+	 * @param code HTTP status code
+	 * @param msg message
+	 * @throws IOException 
+	 */
+	private static void sendText(HttpExchange exchange, int code, String msg) throws IOException {
+		byte[] bytes = (msg + "\n").getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+
+	/**
+	 * Get the MIME type of a report format
+	 * 
+	 * @param format report format
+	 * @return MIME type
+	 */
+	private static String mimeType(String format) {
+		return switch(format) {
+			case "html" -> "text/html; charset=utf-8";
+			case "md" -> "text/markdown; charset=utf-8";
+			case "ttl" -> "text/turtle; charset=utf-8";
+			case "json" -> "application/json";
+			case "ndjson" -> "application/x-ndjson";
+			default -> "text/plain; charset=utf-8";
+		};
+	}
+
+	/**
+	 * Get the RDF format of the uploaded data, based upon the format parameter or the Content-Type header
+	 * 
+	 * @param exchange HTTP exchange
+	 * @param params parameters
+	 * @return RDF format
+	 */
+	private static Optional<RDFFormat> dataFormat(HttpExchange exchange, Map<String, List<String>> params) {
+		String mime = param(params, "format", exchange.getRequestHeaders().getFirst("Content-Type"));
+		if (mime == null) {
+			return Optional.of(RDFFormat.TURTLE);
+		}
+		int semi = mime.indexOf(';');
+		return Rio.getParserFormatForMIMEType((semi < 0) ? mime.strip() : mime.substring(0, semi).strip());
+	}
+
+	/**
+	 * Validate the uploaded data and write the report
+	 * 
+	 * @param exchange HTTP exchange
+	 * @param validator validator
+	 * @param params request parameters
+	 * @param name name of the shapes
+	 * @param report report
+	 * @param format report format
+	 * @param rdf format of the data
+	 * @throws IOException 
+	 */
+	private void validate(HttpExchange exchange, Validator validator, Map<String, List<String>> params,
+			String name, Report report, String format, RDFFormat rdf) throws IOException {
+		List<String> values = params.getOrDefault("countValues", List.of());
+		Model results;
+		Map<String,Object> stats;
+		try (StatisticsCollector collector = new StatisticsCollector(params.containsKey("countClasses"), 
+				params.containsKey("countProperties"), values.toArray(String[]::new), 
+				params.containsKey("approximate") ? Approximation.DEFAULT : null)) {
+			collector.setCoverage(params.containsKey("countCoverage"));
+			try (InputStream is = new BufferedInputStream(exchange.getRequestBody())) {
+				results = validator.validate(is, rdf, collector.isEnabled() ? collector : null);
+			} catch (RDF4JException e) {
+				sendText(exchange, 400, e.getMessage());
+				return;
+			}
+			stats = collector.getStatistics();
+		}
+
+		URL data;
+		try {
+			data = new URI("http", null, host, port, exchange.getRequestURI().getPath(), null, null).toURL();
+		} catch (URISyntaxException e) {
+			throw new IOException(e);
+		}
+		report.reportValidation(results, data, locations.get(name));
+		report.reportStatistics(stats);
+
+		exchange.getResponseHeaders().set("Content-Type", mimeType(format));
+		exchange.getResponseHeaders().set("X-Validation-Status", String.valueOf(Validator.status(results)));
+		exchange.sendResponseHeaders(200, 0);
+		try (Writer w = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+			report.write(w);
+		}
+	}
+
+	/**
+	 * Handle a validation request, with back-pressure when too many requests are waiting
+	 * 
+	 * @param exchange HTTP exchange
+	 * @throws IOException 
+	 */
+	private void handleValidate(HttpExchange exchange) throws IOException {
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			sendText(exchange, 405, "Use POST to upload data");
+			return;
+		}
+		Map<String, List<String>> params = parseQuery(exchange.getRequestURI().getRawQuery());
+
+		String name = param(params, "shapes", locations.keySet().iterator().next());
+		ValidatorPool pool = pools.get(name);
+		if (pool == null) {
+			sendText(exchange, 404, "Unknown shapes " + name);
+			return;
+		}
+		String format = param(params, "report", "ttl");
+		Report report = ReportFactory.createReport(format);
+		if (report == null) {
+			sendText(exchange, 400, "Unknown report format " + format);
+			return;
+		}
+		Optional<RDFFormat> rdf = dataFormat(exchange, params);
+		if (rdf.isEmpty()) {
+			sendText(exchange, 415, "Unsupported data format");
+			return;
+		}
+
+		// back-pressure: refuse requests when all validators are busy and the queue is full
+		if (!admitted.tryAcquire()) {
+			exchange.getResponseHeaders().set("Retry-After", "1");
+			sendText(exchange, 429, "Too many requests");
+			return;
+		}
+		try {
+			running.acquire();
+			try {
+				Validator validator = pool.acquire();
+				try {
+					validate(exchange, validator, params, name, report, format, rdf.get());
+				} finally {
+					pool.release(validator);
+				}
+			} finally {
+				running.release();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			sendText(exchange, 503, "Interrupted");
+		} finally {
+			admitted.release();
+		}
+	}
+
+	@Override
+	public Integer call() throws Exception {
+		int concurrent = maxConcurrent.orElse(Runtime.getRuntime().availableProcessors());
+		admitted = new Semaphore(concurrent + queue);
+		running = new Semaphore(concurrent, true);
+
+		normalizer = Normalizer.create(normalize);
+		parseShapes();
+		createPools(concurrent);
+
+		HttpServer server = HttpServer.create(new InetSocketAddress(host, port), concurrent + queue);
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+
+		server.createContext("/validate", exchange -> {
+			try {
+				handleValidate(exchange);
+			} finally {
+				exchange.close();
+			}
+		});
+		server.createContext("/shapes", exchange -> {
+			try {
+				sendText(exchange, 200, String.join("\n", locations.keySet()));
+			} finally {
+				exchange.close();
+			}
+		});
+		server.createContext("/health", exchange -> {
+			try {
+				sendText(exchange, 200, "OK");
+			} finally {
+				exchange.close();
+			}
+		});
+
+		CountDownLatch stopped = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			LOG.info("Stopping server");
+			server.stop(1);
+			pools.values().forEach(ValidatorPool::close);
+			stopped.countDown();
+		}));
+
+		server.start();
+		LOG.info("Listening on http://{}:{}/", host, port);
+		stopped.await();
+		return 0;
+	}
+}
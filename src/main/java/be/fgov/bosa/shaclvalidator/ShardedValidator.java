@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator;
+
+import be.fgov.bosa.shaclvalidator.helper.RunMetrics;
+import be.fgov.bosa.shaclvalidator.helper.Util;
+import be.fgov.bosa.shaclvalidator.shard.Partitioner;
+import be.fgov.bosa.shaclvalidator.shard.ShapesAnalysis;
+import be.fgov.bosa.shaclvalidator.store.StoreSettings;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.util.Values;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Validate a single large file by partitioning it by subject into shards, validated concurrently in separate sails.
+ * 
+ * When the shapes are not suited for sharding (e.g. sh:inversePath or sh:node), the data is validated as a whole.
+ * Shards are validated without a limit on the number of results, since nodes referred to by other shards are
+ * validated as well (but not reported): the limit is applied when merging the results.
+ * 
+ * @author Bart Hanssens
+ */
+public class ShardedValidator {
+	private final static Logger LOG = LoggerFactory.getLogger(ShardedValidator.class);
+
+	private final Validator validator;
+	private final int shards;
+	private final int maxErrors;
+	private final StoreSettings settings;
+	private RunMetrics metrics = RunMetrics.DISABLED;
+
+	/**
+	 * Merge the results of the shards, only keeping results for focus nodes belonging to the shard
+	 * 
+	 * @param results results per shard
+	 * @param partitioner partitioner
+	 * @return merged report
+	 */
+	private Model merge(List<Model> results, Partitioner partitioner) {
+		Model merged = new LinkedHashModel();
+		BNode report = Values.bnode();
+		merged.add(report, RDF.TYPE, SHACL.VALIDATION_REPORT);
+
+		Map<String,Integer> counts = new HashMap<>();
+		int kept = 0;
+
+		for (int i = 0; i < results.size(); i++) {
+			Model shard = results.get(i);
+			for (Statement st: shard.getStatements(null, SHACL.RESULT, null)) {
+				Resource result = (Resource) st.getObject();
+				Optional<Value> focus = Models.object(shard.filter(result, SHACL.FOCUS_NODE, null));
+				if (focus.isPresent() && !focus.get().isBNode() && partitioner.shard(focus.get()) != i) {
+					continue;
+				}
+				// maximum number of results per shape and constraint
+				String key = Models.object(shard.filter(result, SHACL.SOURCE_SHAPE, null)).map(Value::stringValue)
+								.orElse("") + " " 
+							+ Models.object(shard.filter(result, SHACL.SOURCE_CONSTRAINT_COMPONENT, null))
+								.map(Value::stringValue).orElse("");
+				if (maxErrors > 0 && counts.merge(key, 1, Integer::sum) > maxErrors) {
+					continue;
+				}
+				merged.add(report, SHACL.RESULT, result);
+				Util.copyResult(shard, merged, result);
+				kept++;
+			}
+		}
+		LOG.info("Merged {} results from {} shards", kept, results.size());
+		merged.add(report, SHACL.CONFORMS, Values.literal(kept == 0));
+		return merged;
+	}
+
+	/**
+	 * Validate the shards concurrently
+	 * 
+	 * @param files shard files
+	 * @return results per shard
+	 * @throws IOException 
+	 */
+	private List<Model> validateShards(Path[] files) throws IOException {
+		List<Future<Model>> futures = new ArrayList<>(files.length);
+
+		try (ValidatorPool pool = new ValidatorPool(shards, validator.getShapes(), -1, settings);
+			ExecutorService executor = Executors.newFixedThreadPool(shards)) {
+			pool.setStoreBudget(validator.getStoreBudget() / shards);
+			for (Path file: files) {
+				futures.add(executor.submit(() -> {
+					Validator v = pool.acquire();
+					try {
+						return v.validate(file.toUri().toURL(), Optional.of(RDFFormat.NTRIPLES.getDefaultMIMEType()));
+					} finally {
+						pool.release(v);
+					}
+				}));
+			}
+
+			List<Model> results = new ArrayList<>(files.length);
+			for (Future<Model> future: futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioe) {
+				throw ioe;
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Record the parse and validation phases of the next validations.
+	 * The number of triples is taken from the metrics, counted by the listener passed to the validation.
+	 * 
+	 * @param metrics run metrics, or {@link RunMetrics#DISABLED}
+	 */
+	public void setMetrics(RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Validate an RDF data file (can be a local file or URL) using the shapes loaded into the validator.
+	 * Format is optional: when not present the format will be guessed based on the file extension.
+	 * 
+	 * @param location location of the data
+	 * @param fmt RDF format
+	 * @param listener RDF handler receiving every statement, or null
+	 * @return report with violations/warnings
+	 * @throws IOException 
+	 */
+	public Model validate(URL location, Optional<String> fmt, RDFHandler listener) throws IOException {
+		ShapesAnalysis analysis = new ShapesAnalysis(validator.getShapes());
+		if (!analysis.isShardable()) {
+			LOG.warn("Not validating in shards: {}", analysis.getReason());
+			validator.setMetrics(metrics);
+			try {
+				return validator.validate(location, fmt, listener);
+			} finally {
+				validator.setMetrics(RunMetrics.DISABLED);
+			}
+		}
+
+		LOG.info("Loading data from {}", location.toString());
+		Path dir = Files.createTempDirectory("shards");
+		try {
+			Partitioner partitioner = new Partitioner(shards, analysis, validator.getHttpCache());
+			Path[] files;
+			try (RunMetrics.Phase phase = metrics.start("parse")) {
+				files = partitioner.partition(location, fmt, listener, dir);
+				phase.setTriples(metrics.getTriples());
+			}
+			LOG.info("Validating {} shards", shards);
+			try (RunMetrics.Phase phase = metrics.start("shacl")) {
+				phase.setTriples(metrics.getTriples());
+				return merge(validateShards(files), partitioner);
+			}
+		} finally {
+			FileUtils.deleteDirectory(dir.toFile());
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param validator validator with the shapes loaded, used as fallback
+	 * @param shards number of shards
+	 * @param maxErrors maximum number of errors per shacl rule
+	 * @param settings store settings of the shards
+	 */
+	public ShardedValidator(Validator validator, int shards, int maxErrors, StoreSettings settings) {
+		this.validator = validator;
+		this.shards = shards;
+		this.maxErrors = maxErrors;
+		this.settings = settings;
+	}
+}
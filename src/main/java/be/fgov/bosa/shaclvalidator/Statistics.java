@@ -27,6 +27,7 @@ package be.fgov.bosa.shaclvalidator;
 
 import be.fgov.bosa.shaclvalidator.helper.Util;
 import be.fgov.bosa.shaclvalidator.dao.CountedThing;
+import be.fgov.bosa.shaclvalidator.jfr.StatisticsEvent;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -36,7 +37,6 @@ import java.util.stream.Collectors;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
-import org.eclipse.rdf4j.model.util.Values;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.RDF4J;
 import org.eclipse.rdf4j.repository.Repository;
@@ -127,11 +127,7 @@ public class Statistics {
 		List<IRI> iris = new ArrayList<>(predicates.length);
 		
 		for(String predicate: predicates) {
-			if (predicate.startsWith("http://") || predicate.startsWith("https://") ) {
-				iris.add(Values.iri(predicate));
-			} else {
-				iris.add(Values.iri(Util.NS, predicate));
-			}
+			iris.add(Util.expandIRI(predicate));
 		}
 		return countValues(iris);
 	}
@@ -148,18 +144,24 @@ public class Statistics {
 		Map<String,Object> stats = new HashMap<>();
 	
 		if (classes) {
+			StatisticsEvent event = StatisticsEvent.start();
 			List<CountedThing> countClasses = countClasses();
 			LOG.info("Classes: {}", countClasses.size());
+			event.end("classes", countClasses.size());
 			stats.put("classes", countClasses);
 		}
 		if (properties) {
+			StatisticsEvent event = StatisticsEvent.start();
 			List<CountedThing> countProperties = countProperties();
 			LOG.info("Properties: {}", countProperties.size());
+			event.end("properties", countProperties.size());
 			stats.put("properties", countProperties);
 		}
 		if (values != null && values.length > 0) {
+			StatisticsEvent event = StatisticsEvent.start();
 			Map<String, List<CountedThing>> countValues = countValues(values);
 			LOG.info("Value details: {}", countValues.size());
+			event.end("values", countValues.size());
 			stats.put("values", countValues);
 		}
 		return stats;
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator;
+
+import be.fgov.bosa.shaclvalidator.dao.Approximation;
+import be.fgov.bosa.shaclvalidator.dao.CountedThing;
+import be.fgov.bosa.shaclvalidator.dao.Coverage;
+import be.fgov.bosa.shaclvalidator.jfr.StatisticsEvent;
+import be.fgov.bosa.shaclvalidator.helper.CoverageCounter;
+import be.fgov.bosa.shaclvalidator.helper.ExactCounter;
+import be.fgov.bosa.shaclvalidator.helper.Util;
+import be.fgov.bosa.shaclvalidator.sketch.HyperLogLog;
+import be.fgov.bosa.shaclvalidator.sketch.SpaceSaving;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Statistics collector, calculating all statistics in one pass while the data is being parsed.
+ * 
+ * Contrary to {@link Statistics}, no additional scans of the repository are needed,
+ * and the statistics are also available when the data could not be committed because of validation errors.
+ * 
+ * In approximate mode, property values are not counted exactly but summarized in bounded memory:
+ * a HyperLogLog sketch for the number of distinct values and a Space-Saving sketch for the most frequent values.
+ * When counting exactly with a memory limit, the values are kept off-heap and spilled to disk when needed.
+ * 
+ * @author Bart Hanssens
+ */
+public class StatisticsCollector extends AbstractRDFHandler implements AutoCloseable {
+	private final static Logger LOG = LoggerFactory.getLogger(StatisticsCollector.class);
+
+	private final boolean classes;
+	private final boolean properties;
+	private final Map<IRI, String> predicates = new HashMap<>();
+
+	private final Map<Value, long[]> classCounts = new HashMap<>();
+	private final Map<IRI, long[]> propertyCounts = new HashMap<>();
+	private final Map<IRI, Map<String, long[]>> valueCounts = new HashMap<>();
+
+	private final Approximation approximation;
+	private final Map<IRI, HyperLogLog> distinctSketches = new HashMap<>();
+	private final Map<IRI, SpaceSaving> topSketches = new HashMap<>();
+	private final Map<IRI, ExactCounter> exactCounters = new HashMap<>();
+	private CoverageCounter coverage;
+
+	/**
+	 * Increment a counter in a map
+	 * 
+	 * @param <K>
+	 * @param map map of counters
+	 * @param key key
+	 */
+	private static <K> void increment(Map<K, long[]> map, K key) {
+		map.computeIfAbsent(key, k -> new long[1])[0]++;
+	}
+
+	@Override
+	public void handleStatement(Statement st) {
+		IRI predicate = st.getPredicate();
+
+		if (properties) {
+			increment(propertyCounts, predicate);
+		}
+		if (classes && predicate.equals(RDF.TYPE)) {
+			increment(classCounts, st.getObject());
+		}
+		if (coverage != null) {
+			try {
+				coverage.add(st);
+			} catch (IOException ioe) {
+				throw new RDFHandlerException(ioe);
+			}
+		}
+		if (approximation != null) {
+			HyperLogLog distinct = distinctSketches.get(predicate);
+			if (distinct != null) {
+				String value = st.getObject().stringValue();
+				distinct.add(value);
+				topSketches.get(predicate).add(value);
+			}
+			return;
+		}
+		ExactCounter counter = exactCounters.get(predicate);
+		if (counter != null) {
+			try {
+				counter.add(st.getObject().stringValue());
+			} catch (IOException ioe) {
+				throw new RDFHandlerException(ioe);
+			}
+			return;
+		}
+		Map<String, long[]> values = valueCounts.get(predicate);
+		if (values != null) {
+			increment(values, st.getObject().stringValue());
+		}
+	}
+
+	/**
+	 * Convert counters into a list of counted things
+	 * 
+	 * @param map map of counters
+	 * @return list
+	 */
+	private static List<CountedThing> toList(Map<? extends Value, long[]> map) {
+		List<CountedThing> list = new ArrayList<>(map.size());
+		map.forEach((k, v) -> list.add(
+			new CountedThing((k instanceof IRI iri) ? Util.prefixedIRI(iri) : k.stringValue(), v[0])));
+		return list;
+	}
+
+	/**
+	 * Remove all counts collected so far, e.g. when the data needs to be parsed again
+	 * 
+	 * @throws IOException when the spilled counts could not be removed
+	 */
+	public void reset() throws IOException {
+		classCounts.clear();
+		propertyCounts.clear();
+		valueCounts.values().forEach(Map::clear);
+		for (ExactCounter counter: exactCounters.values()) {
+			counter.clear();
+		}
+		if (coverage != null) {
+			coverage.close();
+			coverage = new CoverageCounter();
+		}
+		if (approximation != null) {
+			createSketches();
+		}
+	}
+
+	/**
+	 * Create empty sketches for each property
+	 */
+	private void createSketches() {
+		for (IRI iri: predicates.keySet()) {
+			distinctSketches.put(iri, new HyperLogLog(approximation.precision()));
+			topSketches.put(iri, new SpaceSaving(approximation.capacity()));
+		}
+	}
+
+	/**
+	 * Get the statistics, in the same format as {@link Statistics#collect(boolean, boolean, String[])}
+	 * 
+	 * @return map of statistics
+	 * @throws IOException when the spilled counts could not be read
+	 */
+	public Map<String,Object> getStatistics() throws IOException {
+		Map<String,Object> stats = new HashMap<>();
+
+		if (classes) {
+			StatisticsEvent event = StatisticsEvent.start();
+			List<CountedThing> countClasses = toList(classCounts);
+			LOG.info("Classes: {}", countClasses.size());
+			event.end("classes", countClasses.size());
+			stats.put("classes", countClasses);
+		}
+		if (properties) {
+			StatisticsEvent event = StatisticsEvent.start();
+			List<CountedThing> countProperties = toList(propertyCounts);
+			LOG.info("Properties: {}", countProperties.size());
+			event.end("properties", countProperties.size());
+			stats.put("properties", countProperties);
+		}
+		if (coverage != null) {
+			StatisticsEvent event = StatisticsEvent.start();
+			List<Coverage> countCoverage = coverage.getCoverage();
+			LOG.info("Coverage: {}", countCoverage.size());
+			event.end("coverage", countCoverage.size());
+			stats.put("coverage", countCoverage);
+		}
+		if (!predicates.isEmpty() && approximation != null) {
+			StatisticsEvent event = StatisticsEvent.start();
+			Map<String, List<CountedThing>> countValues = new HashMap<>();
+			List<CountedThing> distinct = new ArrayList<>();
+			predicates.forEach((k, name) -> {
+				SpaceSaving top = topSketches.get(k);
+				long estimate = distinctSketches.get(k).estimate();
+				countValues.put(name, top.top(approximation.topK()));
+				distinct.add(new CountedThing(name, estimate));
+				LOG.info("Values of {}: {} total, about {} distinct, counts overestimated by at most {}", 
+							name, top.getTotal(), estimate, top.getMaxError());
+			});
+			event.end("values", countValues.size());
+			stats.put("values", countValues);
+			stats.put("distinct", distinct);
+			stats.put("approximation", approximation);
+		} else if (!exactCounters.isEmpty()) {
+			StatisticsEvent event = StatisticsEvent.start();
+			Map<String, List<CountedThing>> countValues = new HashMap<>();
+			for (Map.Entry<IRI, ExactCounter> e: exactCounters.entrySet()) {
+				countValues.put(predicates.get(e.getKey()), e.getValue().getCounts());
+			}
+			LOG.info("Value details: {}", countValues.size());
+			event.end("values", countValues.size());
+			stats.put("values", countValues);
+		} else if (!predicates.isEmpty()) {
+			StatisticsEvent event = StatisticsEvent.start();
+			Map<String, List<CountedThing>> countValues = new HashMap<>();
+			valueCounts.forEach((k, v) -> {
+				List<CountedThing> list = new ArrayList<>(v.size());
+				v.forEach((val, cnt) -> list.add(new CountedThing(val, cnt[0])));
+				countValues.put(predicates.get(k), list);
+			});
+			LOG.info("Value details: {}", countValues.size());
+			event.end("values", countValues.size());
+			stats.put("values", countValues);
+		}
+		return stats;
+	}
+
+	/**
+	 * Check if any statistics are to be collected
+	 * 
+	 * @return true if at least one statistic is requested
+	 */
+	public boolean isEnabled() {
+		return classes || properties || coverage != null || !predicates.isEmpty();
+	}
+
+	/**
+	 * Count the number of instances of each class using each property
+	 * 
+	 * @param enabled true to collect the class x property coverage
+	 */
+	public void setCoverage(boolean enabled) {
+		this.coverage = enabled ? new CoverageCounter() : null;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param classes collect statistics on classes
+	 * @param properties collect statistics on properties
+	 * @param values collect statistics on property values (IRI or prefixed name)
+	 */
+	public StatisticsCollector(boolean classes, boolean properties, String[] values) {
+		this(classes, properties, values, null);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param classes collect statistics on classes
+	 * @param properties collect statistics on properties
+	 * @param values collect statistics on property values (IRI or prefixed name)
+	 * @param approximation parameters for approximate statistics on property values, or null for exact counts
+	 */
+	public StatisticsCollector(boolean classes, boolean properties, String[] values, Approximation approximation) {
+		this(classes, properties, values, approximation, 0);
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (ExactCounter counter: exactCounters.values()) {
+			counter.close();
+		}
+		if (coverage != null) {
+			coverage.close();
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param classes collect statistics on classes
+	 * @param properties collect statistics on properties
+	 * @param values collect statistics on property values (IRI or prefixed name)
+	 * @param approximation parameters for approximate statistics on property values, or null for exact counts
+	 * @param countMemory bytes for counting property values exactly off-heap (shared by all properties), 
+	 *		or 0 to count on the heap
+	 */
+	public StatisticsCollector(boolean classes, boolean properties, String[] values, Approximation approximation,
+			int countMemory) {
+		this.classes = classes;
+		this.properties = properties;
+		this.approximation = approximation;
+		if (values != null) {
+			for (String value: values) {
+				IRI iri = Util.expandIRI(value);
+				predicates.put(iri, Util.prefixedIRI(iri));
+				if (approximation == null && countMemory == 0) {
+					valueCounts.put(iri, new HashMap<>());
+				}
+			}
+		}
+		if (approximation != null) {
+			createSketches();
+		} else if (countMemory > 0) {
+			for (IRI iri: predicates.keySet()) {
+				exactCounters.put(iri, new ExactCounter(countMemory / predicates.size()));
+			}
+		}
+	}
+}
@@ -25,9 +25,27 @@
  */
 package be.fgov.bosa.shaclvalidator;
 
+import be.fgov.bosa.shaclvalidator.cache.HttpCache;
+import be.fgov.bosa.shaclvalidator.cache.ShapesCache;
+import be.fgov.bosa.shaclvalidator.helper.ChunkedParser;
+import be.fgov.bosa.shaclvalidator.helper.Decompressor;
+import be.fgov.bosa.shaclvalidator.helper.RunMetrics;
+import be.fgov.bosa.shaclvalidator.jfr.DataLoadEvent;
+import be.fgov.bosa.shaclvalidator.jfr.ShapesEvent;
+import be.fgov.bosa.shaclvalidator.jfr.ValidationEvent;
+import be.fgov.bosa.shaclvalidator.shapes.Normalizer;
+import be.fgov.bosa.shaclvalidator.shapes.ShapeSelector;
+import be.fgov.bosa.shaclvalidator.store.AutoStore;
+import be.fgov.bosa.shaclvalidator.store.StoreFactory;
+import be.fgov.bosa.shaclvalidator.store.StoreSettings;
+import be.fgov.bosa.shaclvalidator.store.StoreType;
+
 import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -37,6 +55,7 @@ import org.eclipse.rdf4j.common.transaction.IsolationLevels;
 import org.eclipse.rdf4j.model.BNode;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.impl.LinkedHashModel;
@@ -44,15 +63,26 @@ import org.eclipse.rdf4j.model.util.Values;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.RDF4J;
 import org.eclipse.rdf4j.model.vocabulary.SHACL;
+import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.RepositoryResult;
 import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.repository.util.RDFInserter;
+import org.eclipse.rdf4j.rio.ParserConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFParser;
 import org.eclipse.rdf4j.rio.Rio;
-import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
+import org.eclipse.rdf4j.rio.helpers.ParseErrorLogger;
+import org.eclipse.rdf4j.rio.helpers.RDFHandlerWrapper;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
 import org.eclipse.rdf4j.sail.shacl.ShaclSail;
 
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,106 +95,536 @@ import org.slf4j.LoggerFactory;
 public class Validator implements AutoCloseable {
 	private final static Logger LOG = LoggerFactory.getLogger(Validator.class);
 
-	private final Repository repo;
+	// check the heap every n statements when loading into an automatic store
+	private final static int SPILL_CHECK = 50_000;
+
+	private final int maxErrors;
+	private final StoreSettings settings;
+	private Repository repo;
+	private ShaclSail shaclSail;
+	private Path storeDir;
+	private long resultsLimit = -1;
+	private long storeBudget = AutoStore.defaultBudget();
+	private ShapesCache shapesCache;
+	private HttpCache httpCache;
+	private Normalizer normalizer = Normalizer.create();
+	private int parseThreads = 1;
+	private RunMetrics metrics = RunMetrics.DISABLED;
+	private ShapeSelector selector;
+	private List<String> skippedShapes = List.of();
 
 	/**
-	 * Remove shacl:name from NodeShapes (rdfs:range is PropertyShape only), which confuses the SHACL Sail
+	 * Parse and normalize SHACL rules (Turtle), without loading them into the repository.
+	 * Normalization is done on an in-memory copy, which is much faster than querying the SHACL Sail.
 	 * 
-	 * Used by EU DCAT-AP SHACL shapes
+	 * @param locations location of the SHACL file(s)
+	 * @return normalized shapes
+	 * @throws IOException 
+	 */
+	public Model parseShapes(URL[] locations) throws IOException {
+		Model shapes = new LinkedHashModel();
+		RDFParser parser = Rio.createParser(RDFFormat.TURTLE);
+		parser.setRDFHandler(new StatementCollector(shapes));
+		if (httpCache != null) {
+			httpCache.prefetch(locations);
+		}
+		for (URL location: locations) {
+			LOG.info("Loading shacl from {}", location.toString());
+			Decompressor.forEach(location, httpCache, (is, name) -> parser.parse(is));
+		}
+		normalizer.apply(shapes);
+		return shapes;
+	}
+
+	/**
+	 * Load SHACL rules (Turtle) and normalize them, or load the normalized rules from the cache (if any)
 	 * 
-	 * @param conn connection
+	 * @param locations location of the SHACL file(s)
+	 * @throws IOException 
 	 */
-	private void fixNamesOnNode(RepositoryConnection conn) {
-		conn.remove((Resource) null, SHACL.NAME, null, RDF4J.SHACL_SHAPE_GRAPH);
+	private void loadShacl(URL[] locations) throws IOException {
+		ShapesEvent event = new ShapesEvent();
+		event.begin();
+
+		String key = (shapesCache != null) ? shapesCache.key(locations, normalizer.getName(), httpCache) : null;
+
+		// the cache contains all shapes, the selection is applied afterwards
+		if (key != null && selector == null) {
+			try (RepositoryConnection conn = repo.getConnection()) {
+				conn.begin();
+				boolean cached = shapesCache.load(key, conn);
+				conn.commit();
+				if (cached) {
+					commit(event, locations, getShapes(), true);
+					return;
+				}
+			}
+		}
+
+		Model shapes = new LinkedHashModel();
+		boolean cached = (key != null) && shapesCache.load(key, shapes);
+		if (!cached) {
+			shapes = parseShapes(locations);
+			if (key != null) {
+				shapesCache.store(key, locations, shapes);
+			}
+		}
+		select(shapes);
+
+		try (RepositoryConnection conn = repo.getConnection()) {
+			conn.begin();
+			conn.add(shapes, RDF4J.SHACL_SHAPE_GRAPH);
+			conn.commit();
+		}
+		commit(event, locations, shapes, cached);
 	}
 
 	/**
-	 * Remove empty shacl:property on shacl:NodeShape, arguably a bug
+	 * Remove the shapes that are not selected (if any selection was set) from the shapes graph
 	 * 
-	 * Used by EU DCAT-AP SHACL shapes
+	 * @param shapes normalized shapes
+	 * @return shapes
+	 */
+	public Model select(Model shapes) {
+		if (selector != null) {
+			skippedShapes = selector.apply(shapes);
+		}
+		return shapes;
+	}
+
+	/**
+	 * Commit the flight recorder event for loading the shapes, if the event is enabled
+	 * 
+	 * @param event event
+	 * @param locations location of the SHACL file(s)
+	 * @param shapes shapes
+	 * @param cached true if loaded from the cache
+	 */
+	private static void commit(ShapesEvent event, URL[] locations, Model shapes, boolean cached) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.sources = Arrays.stream(locations).map(URL::toString).collect(Collectors.joining(" "));
+			event.shapes = shapes.filter(null, RDF.TYPE, SHACL.NODE_SHAPE).subjects().size()
+							+ shapes.filter(null, SHACL.PROPERTY, null).objects().size();
+			event.triples = shapes.size();
+			event.cached = cached;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Remove the data, but not the shapes, from the repository
 	 * 
 	 * @param conn connection
 	 */
-	private void fixEmptyProperties(RepositoryConnection conn) {
-		// remove empty property shapes values, i.e. remove if they use a blank node which points to nothing
-		List<Statement> blanks = conn.getStatements(null, SHACL.PROPERTY, null, RDF4J.SHACL_SHAPE_GRAPH)
+	private void clearData(RepositoryConnection conn) {
+		List<Resource> contexts = conn.getContextIDs()
 									.stream()
-									.filter(s -> 
-										conn.getStatements((Resource) s.getObject(), null, null, RDF4J.SHACL_SHAPE_GRAPH)
-											.stream()
-											.count() == 0)
+									.filter(c -> !c.equals(RDF4J.SHACL_SHAPE_GRAPH))
 									.collect(Collectors.toList());
-		conn.remove(blanks, RDF4J.SHACL_SHAPE_GRAPH);
-	
-		// now remove shacl:NodeShape that don't contain shacl:property anymore
-		List<Resource> noshapes = conn.getStatements(null, RDF.TYPE, SHACL.NODE_SHAPE, RDF4J.SHACL_SHAPE_GRAPH)
-									.stream()
-									.filter(s ->
-										conn.getStatements((Resource) s.getSubject(), SHACL.PROPERTY, null, RDF4J.SHACL_SHAPE_GRAPH)
-											.stream()
-											.count() == 0)
-									.map(Statement::getSubject)
-									.collect(Collectors.toList());
-		noshapes.forEach(n -> conn.remove(n, null, null, RDF4J.SHACL_SHAPE_GRAPH));
+		// removing data must not trigger validation
+		conn.begin(ShaclSail.TransactionSettings.ValidationApproach.Disabled);
+		conn.clear((Resource) null);
+		if (!contexts.isEmpty()) {
+			conn.clear(contexts.toArray(Resource[]::new));
+		}
+		conn.commit();
 	}
 
 	/**
-	 * Load SHACL rules (Turtle)
+	 * Load the SHACL files, removing any data and shapes that were loaded before.
+	 * The shapes can then be used to validate one or more data files.
 	 * 
-	 * @param locations location of the SHACL file(s)
+	 * @param shacls location of the SHACL file(s)
 	 * @throws IOException 
 	 */
-	private void loadShacl(URL[] locations) throws IOException {
+	public void loadShapes(URL[] shacls) throws IOException {
+		try (RepositoryConnection conn = repo.getConnection()) {
+			conn.clear();
+		}
+		loadShacl(shacls);
+	}
+
+	/**
+	 * Load (normalized) shapes, removing any data and shapes that were loaded before.
+	 * This allows multiple validators to share shapes that were parsed only once.
+	 * 
+	 * @param shapes shapes
+	 */
+	public void loadShapes(Model shapes) {
 		try (RepositoryConnection conn = repo.getConnection()) {
+			conn.clear();
 			conn.begin();
-	
-			for (URL location: locations) {
-				LOG.info("Loading shacl from {}", location.toString());
-				try(BufferedInputStream bisShacl = new BufferedInputStream(location.openStream())) {
-					conn.add(bisShacl, "", RDFFormat.TURTLE, RDF4J.SHACL_SHAPE_GRAPH);
+			conn.add(shapes, RDF4J.SHACL_SHAPE_GRAPH);
+			conn.commit();
+		}
+	}
+
+	/**
+	 * Get a copy of the (normalized) shapes that were loaded
+	 * 
+	 * @return shapes
+	 */
+	public Model getShapes() {
+		try (RepositoryConnection conn = repo.getConnection()) {
+			return QueryResults.asModel(conn.getStatements(null, null, null, false, RDF4J.SHACL_SHAPE_GRAPH));
+		}
+	}
+
+	/**
+	 * Validate RDF data using the shapes loaded before.
+	 * Data from a previous validation will be removed first.
+	 * 
+	 * @param data RDF data
+	 * @param format RDF format
+	 * @return report with violations/warnings
+	 * @throws IOException 
+	 */
+	public Model validate(InputStream data, RDFFormat format) throws IOException {
+		return validate(data, format, null);
+	}
+
+	/**
+	 * Loading data into the repository
+	 */
+	@FunctionalInterface
+	private interface Loader {
+		void load(RDFHandler inserter) throws IOException;
+	}
+
+	/**
+	 * Create the configuration for parsing the data.
+	 * The sequential and the chunked parser use the same configuration, so both accept the same input.
+	 * 
+	 * @param preserveBNodeIDs keep the blank node IDs of the data
+	 * @return parser configuration
+	 */
+	public static ParserConfig parserConfig(boolean preserveBNodeIDs) {
+		ParserConfig config = new ParserConfig();
+		config.set(BasicParserSettings.PRESERVE_BNODE_IDS, preserveBNodeIDs);
+		return config;
+	}
+
+	/**
+	 * Load RDF data into the repository.
+	 * Every document (e.g. every file in a zip archive) gets new blank nodes,
+	 * so the same blank node label in different documents is not the same node.
+	 * 
+	 * @param inserter handler inserting the statements into the repository
+	 * @param data RDF data
+	 * @param format RDF format
+	 * @param listener RDF handler receiving every statement, or null
+	 * @throws IOException 
+	 */
+	private static void load(RDFHandler inserter, InputStream data, RDFFormat format, RDFHandler listener) 
+			throws IOException {
+		RDFParser parser = Rio.createParser(format);
+		parser.setParserConfig(parserConfig(false));
+		parser.setParseErrorListener(new ParseErrorLogger());
+		parser.setRDFHandler(listener == null ? inserter : new RDFHandlerWrapper(inserter, listener));
+		parser.parse(data);
+	}
+
+	/**
+	 * Check if the store is an automatic store that is still in memory
+	 * 
+	 * @return true if the store can still switch to disk
+	 */
+	private boolean isAutoMemory() {
+		return settings.type() == StoreType.AUTO && storeDir == null;
+	}
+
+	/**
+	 * Create the SHACL Sail and the repository
+	 * 
+	 * @param s store settings
+	 * @param dir directory of the store, or null for in-memory stores
+	 */
+	private void create(StoreSettings s, Path dir) {
+		shaclSail = new ShaclSail(StoreFactory.createStore(s, dir));
+		shaclSail.setValidationResultsLimitPerConstraint(maxErrors);
+		shaclSail.setValidationResultsLimitTotal(resultsLimit);
+		repo = new SailRepository(shaclSail);
+		storeDir = dir;
+	}
+
+	/**
+	 * Replace the in-memory store of an automatic store by a native store containing the same shapes.
+	 * The previous repository is not shut down, since it may still have an open transaction.
+	 * 
+	 * @param shapes shapes loaded in the previous repository
+	 * @return previous repository
+	 * @throws IOException when the directory of the store could not be created
+	 */
+	private Repository switchToDisk(Model shapes) throws IOException {
+		Repository previous = repo;
+		StoreSettings s = settings.asNative();
+		create(s, StoreFactory.createDirectory(s));
+		loadShapes(shapes);
+		return previous;
+	}
+
+	/**
+	 * Replace the native store of an automatic store by a new in-memory store containing the same shapes,
+	 * so the store is chosen again for the next data file.
+	 */
+	private void switchToMemory() {
+		Model shapes = getShapes();
+		Repository previous = repo;
+		Path dir = storeDir;
+		create(settings, null);
+		loadShapes(shapes);
+		previous.shutDown();
+		if (!settings.keep()) {
+			FileUtils.deleteQuietly(dir.toFile());
+		}
+		LOG.info("Switched back to memory store");
+	}
+
+	/**
+	 * Inserting statements in a single transaction, which spills the data loaded so far to a native store
+	 * when an automatic store in memory exceeds the heap budget, estimated from the number of triples loaded.
+	 * Spilling copies the statements that were already loaded, so the data does not have to be parsed again.
+	 */
+	private class SpillingInserter extends AbstractRDFHandler implements AutoCloseable {
+		private RepositoryConnection conn;
+		private RDFInserter inserter;
+		private long count = 0;
+
+		/**
+		 * Start a transaction on the current repository
+		 */
+		private void begin() {
+			conn = repo.getConnection();
+			conn.begin(IsolationLevels.NONE, ShaclSail.TransactionSettings.ValidationApproach.Bulk);
+			inserter = new RDFInserter(conn);
+			// the parsers already create new blank nodes per document (or keep the labels of one N-Triples file),
+			// and the statements copied when spilling must keep the same blank nodes
+			inserter.enforcePreserveBNodeIDs(true);
+		}
+
+		/**
+		 * Copy the data loaded so far to a native store and continue loading there
+		 * 
+		 * @throws IOException
+		 */
+		private void spill() throws IOException {
+			LOG.warn("Estimated heap usage {} MB exceeds budget of {} MB after {} triples, switching to native store",
+						count * AutoStore.BYTES_PER_TRIPLE / 1024 / 1024, storeBudget / 1024 / 1024, count);
+			RepositoryConnection memory = conn;
+			Repository previous = switchToDisk(
+				QueryResults.asModel(memory.getStatements(null, null, null, false, RDF4J.SHACL_SHAPE_GRAPH)));
+			begin();
+			for (Namespace ns: memory.getNamespaces()) {
+				conn.setNamespace(ns.getPrefix(), ns.getName());
+			}
+			try (RepositoryResult<Statement> res = memory.getStatements(null, null, null, false)) {
+				for (Statement st: res) {
+					if (!RDF4J.SHACL_SHAPE_GRAPH.equals(st.getContext())) {
+						conn.add(st);
+					}
+				}
+			}
+			memory.rollback();
+			memory.close();
+			previous.shutDown();
+			LOG.info("Copied {} triples to native store in {}", count, storeDir);
+		}
+
+		@Override
+		public void handleNamespace(String prefix, String uri) {
+			inserter.handleNamespace(prefix, uri);
+		}
+
+		@Override
+		public void handleStatement(Statement st) {
+			inserter.handleStatement(st);
+			// the heap used by this validator, not the entire heap, which is shared with other validators
+			if (++count % SPILL_CHECK == 0 && isAutoMemory() && count * AutoStore.BYTES_PER_TRIPLE > storeBudget) {
+				try {
+					spill();
+				} catch (IOException ioe) {
+					throw new RepositoryException(ioe);
 				}
 			}
-			fixNamesOnNode(conn);
-			fixEmptyProperties(conn);
+		}
 
+		/**
+		 * Get the number of statements inserted so far
+		 * 
+		 * @return number of statements
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Commit the transaction, validating the data
+		 */
+		public void commit() {
 			conn.commit();
 		}
+
+		@Override
+		public void close() {
+			conn.close();
+		}
+
+		private SpillingInserter() {
+			begin();
+		}
+	}
+
+	/**
+	 * Load data in a single transaction and validate it using the shapes loaded before.
+	 * Data from a previous validation will be removed first.
+	 * 
+	 * @param source description of the data, for the flight recorder
+	 * @param loader loader
+	 * @return report with violations/warnings
+	 * @throws IOException 
+	 */
+	private Model validate(String source, Loader loader) throws IOException {
+		try (RepositoryConnection conn = repo.getConnection()) {
+			clearData(conn);
+		}
+
+		ValidationEvent event = new ValidationEvent();
+		Model results = null;
+		// counted by the inserter, since the run metrics may be disabled
+		long triples = 0;
+
+		try (SpillingInserter inserter = new SpillingInserter()) {
+			DataLoadEvent loadEvent = new DataLoadEvent();
+			loadEvent.begin();
+			try (RunMetrics.Phase phase = metrics.start("parse")) {
+				loader.load(inserter);
+				phase.setTriples(metrics.getTriples());
+			}
+			triples = inserter.getCount();
+			loadEvent.end();
+			if (loadEvent.shouldCommit()) {
+				loadEvent.source = source;
+				loadEvent.triples = triples;
+				loadEvent.commit();
+			}
+			// validation is done when committing
+			event.begin();
+			try (RunMetrics.Phase phase = metrics.start("shacl")) {
+				phase.setTriples(metrics.getTriples());
+				inserter.commit();
+			}
+		} catch (RepositoryException exception) {
+			Throwable cause = exception.getCause();
+			if (!(cause instanceof ValidationException validationException)) {
+				throw exception;
+			}
+			results = validationException.validationReportAsModel();
+		}
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.source = source;
+			event.triples = triples;
+			event.results = (results != null) ? results.filter(null, SHACL.RESULT, null).size() : 0;
+			event.conforms = (results == null);
+			event.commit();
+		}
+		// everyting ok if there are no results
+		return (results != null) ? results : conforming();
 	}
 
 	/**
-	 * Validate a file
+	 * Validate RDF data using the shapes loaded before, passing the parsed statements to a listener 
+	 * (e.g. to collect statistics) while loading.
+	 * Data from a previous validation will be removed first.
+	 * 
+	 * @param data RDF data
+	 * @param format RDF format
+	 * @param listener RDF handler receiving every statement, or null
+	 * @return report with violations/warnings
+	 * @throws IOException 
+	 */
+	public Model validate(InputStream data, RDFFormat format, RDFHandler listener) throws IOException {
+		return validate("stream", inserter -> load(inserter, data, format, listener));
+	}
+
+	/**
+	 * Validate an RDF data file (can be a local file or URL) using the shapes loaded before.
+	 * Data from a previous validation will be removed first.
+	 * Format is optional: when not present the format will be guessed based on the file extension.
 	 * 
 	 * @param location location of the data
 	 * @param fmt RDF format
 	 * @return report with violations/warnings
 	 * @throws IOException 
 	 */
-	private Model validate(URL location, Optional<String> fmt) throws IOException {
+	public Model validate(URL location, Optional<String> fmt) throws IOException {
+		return validate(location, fmt, null);
+	}
+
+	/**
+	 * Validate an RDF data file (can be a local file or URL) using the shapes loaded before,
+	 * passing the parsed statements to a listener (e.g. to collect statistics) while loading.
+	 * Data from a previous validation will be removed first.
+	 * Format is optional: when not present the format will be guessed based on the file extension.
+	 * 
+	 * @param location location of the data
+	 * @param fmt RDF format
+	 * @param listener RDF handler receiving every statement, or null
+	 * @return report with violations/warnings
+	 * @throws IOException 
+	 */
+	public Model validate(URL location, Optional<String> fmt, RDFHandler listener) throws IOException {
 		LOG.info("Loading data from {}", location.toString());
-		try (RepositoryConnection conn = repo.getConnection();
-			BufferedInputStream bisData = new BufferedInputStream(location.openStream())) {
-			
-			Optional<RDFFormat> rdf = fmt.isPresent() 
-				? Rio.getParserFormatForMIMEType(fmt.get())
-				: Rio.getParserFormatForFileName(location.getFile());
 
-			conn.begin(IsolationLevels.NONE, ShaclSail.TransactionSettings.ValidationApproach.Bulk);
-			conn.add(bisData, rdf.orElse(RDFFormat.RDFXML));
-			conn.commit();
-		} catch (RepositoryException exception) {
-			Throwable cause = exception.getCause();
-			if (cause instanceof ValidationException validationException) {
-				return validationException.validationReportAsModel();
+		RDFFormat format = format(location, fmt);
+		if (settings.type() == StoreType.AUTO) {
+			if (storeDir != null) {
+				switchToMemory();
 			}
+			chooseStore(location, format);
 		}
 
-		// everyting ok		
-		Model m = new LinkedHashModel();
-		BNode node = Values.bnode();
-		m.add(node, RDF.TYPE, SHACL.VALIDATION_REPORT);
-		m.add(node, SHACL.CONFORMS, Values.literal(true));
+		if (Decompressor.isCompressed(location.getFile())) {
+			return validate(location.toString(), inserter -> Decompressor.forEach(location, httpCache, (is, name) -> {
+				LOG.info("Loading {}", name);
+				load(inserter, is, format(name, fmt), listener);
+			}));
+		}
 
-		return m;
+		if (parseThreads > 1 && ChunkedParser.supports(location, format)) {
+			Path file = ChunkedParser.toPath(location);
+			ChunkedParser parser = new ChunkedParser(parseThreads);
+			return validate(location.toString(), inserter -> 
+				parser.parse(file, format, parserConfig(true), listener == null ? inserter : new RDFHandlerWrapper(inserter, listener)));
+		}
+
+		InputStream is = (httpCache != null) ? httpCache.open(location) : location.openStream();
+		try (BufferedInputStream bisData = new BufferedInputStream(is)) {
+			return validate(location.toString(), inserter -> load(inserter, bisData, format, listener));
+		}
+	}
+
+	/**
+	 * Switch an automatic store to disk when the data is not expected to fit in the heap budget.
+	 * When the size of the data is unknown, the store stays in memory and only switches while loading.
+	 * 
+	 * @param location location of the data
+	 * @param format RDF format
+	 * @throws IOException 
+	 */
+	private void chooseStore(URL location, RDFFormat format) throws IOException {
+		long triples = AutoStore.estimateTriples(location, format);
+		long needed = triples * AutoStore.BYTES_PER_TRIPLE;
+		if (triples >= 0 && needed > storeBudget) {
+			LOG.info("Estimated {} MB exceeds budget of {} MB, using native store", 
+						needed / 1024 / 1024, storeBudget / 1024 / 1024);
+			switchToDisk(getShapes()).shutDown();
+		} else {
+			LOG.info("Estimated {} MB within budget of {} MB, using memory store", 
+						needed / 1024 / 1024, storeBudget / 1024 / 1024);
+		}
 	}
 
 	/**
@@ -178,14 +638,54 @@ public class Validator implements AutoCloseable {
 	 * @throws IOException 
 	 */
 	public Model validate(URL[] shacls, URL data, Optional<String> format) throws IOException {
-		try (RepositoryConnection conn = repo.getConnection()) {
-			conn.clear();
-		}
-		loadShacl(shacls);
-		
+		loadShapes(shacls);
 		return validate(data, format);
 	}
 
+	/**
+	 * Create an empty report, for data that conforms to the shapes
+	 * 
+	 * @return report
+	 */
+	public static Model conforming() {
+		Model m = new LinkedHashModel();
+		BNode node = Values.bnode();
+		m.add(node, RDF.TYPE, SHACL.VALIDATION_REPORT);
+		m.add(node, SHACL.CONFORMS, Values.literal(true));
+		return m;
+	}
+
+	/**
+	 * Get the RDF format of a data file.
+	 * When the MIME type is not present the format will be guessed based on the file extension.
+	 * 
+	 * @param location location of the data
+	 * @param fmt optional MIME type
+	 * @return RDF format, RDF/XML by default
+	 */
+	public static RDFFormat format(URL location, Optional<String> fmt) {
+		return format(location.getFile(), fmt);
+	}
+
+	/**
+	 * Get the RDF format of a (decompressed) data file.
+	 * When the MIME type is not present the format will be guessed based on the file extension,
+	 * ignoring a .gz extension.
+	 * 
+	 * @param name file name
+	 * @param fmt optional MIME type
+	 * @return RDF format, RDF/XML by default
+	 */
+	public static RDFFormat format(String name, Optional<String> fmt) {
+		String file = name.toLowerCase().endsWith(Decompressor.GZIP) 
+			? name.substring(0, name.length() - Decompressor.GZIP.length())
+			: name;
+		Optional<RDFFormat> rdf = fmt.isPresent() 
+			? Rio.getParserFormatForMIMEType(fmt.get())
+			: Rio.getParserFormatForFileName(file);
+		return rdf.orElse(RDFFormat.RDFXML);
+	}
+
 	/**
 	 * Return number of results with a specific severity level
 	 * 
@@ -228,7 +728,131 @@ public class Validator implements AutoCloseable {
 	}
 
 	/**
-	 * Get the underlying repository;
+	 * Return the status code for the validation results: 
+	 * 1 for violations, 2 for warnings, 3 for infos, 0 when there are no issues
+	 * 
+	 * @param model
+	 * @return status code
+	 */
+	public static int status(Model model) {
+		if (countErrors(model) > 0) {
+			return 1;
+		}
+		if (countWarnings(model) > 0) {
+			return 2;
+		}
+		if (countInfos(model) > 0) {
+			return 3;
+		}
+		return 0;
+	}
+
+	/**
+	 * Use an on-disk cache for the normalized SHACL shapes
+	 * 
+	 * @param shapesCache cache or null to disable caching
+	 */
+	public void setShapesCache(ShapesCache shapesCache) {
+		this.shapesCache = shapesCache;
+	}
+
+	/**
+	 * Use an on-disk cache for remote data and SHACL files
+	 * 
+	 * @param httpCache cache or null to disable caching
+	 */
+	public void setHttpCache(HttpCache httpCache) {
+		this.httpCache = httpCache;
+	}
+
+	/**
+	 * Get the on-disk cache for remote files
+	 * 
+	 * @return cache or null
+	 */
+	public HttpCache getHttpCache() {
+		return httpCache;
+	}
+
+	/**
+	 * Set the number of threads used for parsing local N-Triples and N-Quads files
+	 * 
+	 * @param parseThreads number of threads, 1 to disable parallel parsing
+	 */
+	public void setParseThreads(int parseThreads) {
+		this.parseThreads = parseThreads;
+	}
+
+	/**
+	 * Limit the total number of validation results (fail-fast), on top of the limit per constraint.
+	 * The SHACL Sail stops validating when the limit has been reached, so the report is incomplete.
+	 * 
+	 * @param limit maximum number of results, -1 for no limit
+	 */
+	public void setResultsLimit(long limit) {
+		this.resultsLimit = limit;
+		shaclSail.setValidationResultsLimitTotal(limit);
+	}
+
+	/**
+	 * Set the heap budget of an automatic store: when the data is expected or turns out to need more heap,
+	 * the store switches from memory to disk.
+	 * Once switched, the native store is also used for the next validations.
+	 * 
+	 * @param bytes number of bytes
+	 */
+	public void setStoreBudget(long bytes) {
+		this.storeBudget = bytes;
+	}
+
+	/**
+	 * Get the heap budget of an automatic store
+	 * 
+	 * @return number of bytes
+	 */
+	public long getStoreBudget() {
+		return storeBudget;
+	}
+
+	/**
+	 * Set the selection of shapes to validate, applied when loading the shapes
+	 * 
+	 * @param selector selector or null to validate all shapes
+	 */
+	public void setSelector(ShapeSelector selector) {
+		this.selector = (selector != null && selector.isEnabled()) ? selector : null;
+	}
+
+	/**
+	 * Get the shapes that were skipped when loading the shapes
+	 * 
+	 * @return description of the skipped shapes
+	 */
+	public List<String> getSkippedShapes() {
+		return skippedShapes;
+	}
+
+	/**
+	 * Record the parse and validation phases of the next validations.
+	 * The number of triples is taken from the metrics, counted by the listener passed to the validation.
+	 * 
+	 * @param metrics run metrics, or {@link RunMetrics#DISABLED}
+	 */
+	public void setMetrics(RunMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Set the normalization passes applied to the shapes
+	 * 
+	 * @param normalizer normalization pipeline
+	 */
+	public void setNormalizer(Normalizer normalizer) {
+		this.normalizer = normalizer;
+	}
+
+	/**
+	 * Get the underlying repository, which may change when an automatic store switches to disk
 	 * 
 	 * @return 
 	 */
@@ -241,16 +865,43 @@ public class Validator implements AutoCloseable {
 		if (repo != null) {
 			repo.shutDown();
 		}
+		// unless kept, the directory is a temporary directory created by the store factory
+		if (storeDir != null && !settings.keep()) {
+			LOG.info("Removing store {}", storeDir);
+			FileUtils.deleteQuietly(storeDir.toFile());
+		}
 	}
 
 	/**
 	 * Constructor
 	 * 
 	 * @param maxErrors maximum number of errors per shacl rule
+	 * @param settings store settings
+	 * @param dir directory of the store, or null for in-memory stores
+	 */
+	private Validator(int maxErrors, StoreSettings settings, Path dir) {
+		this.maxErrors = maxErrors;
+		this.settings = settings;
+		create(settings, dir);
+	}
+
+	/**
+	 * Constructor, using a specific store (in-memory, disk-based or automatic)
+	 * 
+	 * @param maxErrors maximum number of errors per shacl rule
+	 * @param settings store settings
+	 * @throws IOException when the directory of a disk-based store could not be created
+	 */
+	public Validator(int maxErrors, StoreSettings settings) throws IOException {
+		this(maxErrors, settings, StoreFactory.createDirectory(settings));
+	}
+
+	/**
+	 * Constructor, using an in-memory store
+	 * 
+	 * @param maxErrors maximum number of errors per shacl rule
 	 */
     public Validator(int maxErrors) {
-		ShaclSail shaclSail = new ShaclSail(new MemoryStore());
-		shaclSail.setValidationResultsLimitPerConstraint(maxErrors);
-		repo = new SailRepository(shaclSail);
+		this(maxErrors, StoreSettings.memory(), null);
 	}
 }
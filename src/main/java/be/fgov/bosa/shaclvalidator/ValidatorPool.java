@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator;
+
+import be.fgov.bosa.shaclvalidator.cache.HttpCache;
+import be.fgov.bosa.shaclvalidator.store.AutoStore;
+import be.fgov.bosa.shaclvalidator.store.StoreSettings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.eclipse.rdf4j.model.Model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of isolated validators, each with its own SHACL Sail, 
+ * seeded from a shared, immutable copy of the normalized shapes.
+ * 
+ * @author Bart Hanssens
+ */
+public class ValidatorPool implements AutoCloseable {
+	private final static Logger LOG = LoggerFactory.getLogger(ValidatorPool.class);
+
+	private final int size;
+	private final Model shapes;
+	private final int maxErrors;
+	private final StoreSettings settings;
+	private HttpCache httpCache;
+	private long resultsLimit = -1;
+	private long storeBudget = AutoStore.defaultBudget();
+
+	private final BlockingQueue<Validator> idle;
+	private final List<Validator> all;
+
+	/**
+	 * Create a new validator, using a separate directory for disk-based stores
+	 * 
+	 * @return validator
+	 * @throws IOException 
+	 */
+	private Validator create() throws IOException {
+		int nr = all.size();
+		StoreSettings s = (settings.dir() == null) ? settings 
+			: new StoreSettings(settings.type(), settings.dir().resolve("pool-" + nr), settings.indexes(), 
+								settings.valueCacheSize(), settings.valueIDCacheSize(), settings.keep());
+
+		LOG.info("Creating validator {} of {}", nr + 1, size);
+		Validator validator = new Validator(maxErrors, s);
+		validator.setHttpCache(httpCache);
+		validator.setResultsLimit(resultsLimit);
+		validator.setStoreBudget(storeBudget);
+		all.add(validator);
+		validator.loadShapes(shapes);
+		return validator;
+	}
+
+	/**
+	 * Get a validator from the pool, waiting until a validator is available when all validators are in use.
+	 * Validators are created on demand.
+	 * 
+	 * @return validator
+	 * @throws IOException
+	 * @throws InterruptedException 
+	 */
+	public Validator acquire() throws IOException, InterruptedException {
+		Validator validator = idle.poll();
+		if (validator != null) {
+			return validator;
+		}
+		synchronized (all) {
+			if (all.size() < size) {
+				return create();
+			}
+		}
+		return idle.take();
+	}
+
+	/**
+	 * Return a validator to the pool
+	 * 
+	 * @param validator 
+	 */
+	public void release(Validator validator) {
+		idle.offer(validator);
+	}
+
+	/**
+	 * Use an on-disk cache for remote data files, shared by all validators
+	 * 
+	 * @param httpCache cache or null
+	 */
+	public void setHttpCache(HttpCache httpCache) {
+		this.httpCache = httpCache;
+	}
+
+	/**
+	 * Limit the total number of validation results of each validation (fail-fast).
+	 * The limit applies to every validator in the pool separately.
+	 * 
+	 * @param resultsLimit maximum number of results per validation, -1 for no limit
+	 */
+	public void setResultsLimit(long resultsLimit) {
+		this.resultsLimit = resultsLimit;
+	}
+
+	/**
+	 * Set the heap budget of each automatic store in the pool
+	 * 
+	 * @param storeBudget number of bytes per validator
+	 */
+	public void setStoreBudget(long storeBudget) {
+		this.storeBudget = storeBudget;
+	}
+
+	/**
+	 * Get the number of validators in the pool
+	 * 
+	 * @return size
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void close() {
+		synchronized (all) {
+			all.forEach(Validator::close);
+			all.clear();
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param size maximum number of validators
+	 * @param shapes normalized shapes, shared by all validators
+	 * @param maxErrors maximum number of errors per shacl rule
+	 * @param settings store settings
+	 */
+	public ValidatorPool(int size, Model shapes, int maxErrors, StoreSettings settings) {
+		this.size = size;
+		this.shapes = shapes.unmodifiable();
+		this.maxErrors = maxErrors;
+		this.settings = settings;
+		this.idle = new ArrayBlockingQueue<>(size);
+		this.all = new ArrayList<>(size);
+	}
+}
@@ -0,0 +1,397 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.cache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache of remote (HTTP) files, revalidated using conditional GET requests 
+ * (If-None-Match / If-Modified-Since).
+ * 
+ * The body of a new or modified file is written to disk while it is being read,
+ * and the least recently used files are removed when the cache exceeds its maximum size.
+ * 
+ * @author Bart Hanssens
+ */
+public class HttpCache {
+	private final static Logger LOG = LoggerFactory.getLogger(HttpCache.class);
+
+	private final static String BODY = ".body";
+	private final static String INFO = ".properties";
+	// remaining bytes read when closing, e.g. a gzip trailer or zip central directory after the last entry
+	private final static int DRAIN_LIMIT = 256 * 1024;
+
+	private final Path dir;
+	private final long maxSize;
+	// files already downloaded or revalidated during this run
+	private final Set<String> fresh = Collections.synchronizedSet(new HashSet<>());
+
+	/**
+	 * Input stream writing the data to a temporary file while it is being read.
+	 * When the entire stream has been read, the file is stored in the cache.
+	 * Readers may stop just before the end of the stream (e.g. at the end of gzip data), so a limited number 
+	 * of remaining bytes is read when closing, unless reading failed.
+	 * Readers stopping earlier (e.g. parse error) don't download the rest, and the file is not cached.
+	 */
+	private class TeeInputStream extends FilterInputStream {
+		private final String key;
+		private final Properties props;
+		private final Path tmp;
+		private final OutputStream out;
+		private boolean complete = false;
+		private boolean failed = false;
+		private boolean closed = false;
+
+		@Override
+		public int read() throws IOException {
+			int b;
+			try {
+				b = super.read();
+			} catch (IOException ioe) {
+				failed = true;
+				throw ioe;
+			}
+			if (b < 0) {
+				complete = true;
+			} else {
+				out.write(b);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n;
+			try {
+				n = super.read(b, off, len);
+			} catch (IOException ioe) {
+				failed = true;
+				throw ioe;
+			}
+			if (n < 0) {
+				complete = true;
+			} else {
+				out.write(b, off, n);
+			}
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			// skipped bytes must be written to the cache as well
+			return Math.max(0, read(new byte[(int) Math.min(n, 8192)]));
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				if (!complete && !failed) {
+					// only copy a few remaining bytes, a reader stopping early (e.g. parse error) doesn't need the rest
+					byte[] buf = new byte[8192];
+					long drained = 0;
+					int n;
+					while (drained < DRAIN_LIMIT && (n = read(buf, 0, buf.length)) >= 0) {
+						drained += n;
+					}
+					if (!complete) {
+						LOG.debug("Stopped reading before the end, not caching {}", props.getProperty("url"));
+					}
+				}
+			} catch (IOException ioe) {
+				LOG.warn("Could not read the remaining data for the cache: {}", ioe.getMessage());
+			}
+			try {
+				super.close();
+			} finally {
+				out.close();
+				if (complete) {
+					store(key, props, tmp);
+				} else {
+					Files.deleteIfExists(tmp);
+				}
+			}
+		}
+
+		TeeInputStream(InputStream in, String key, Properties props) throws IOException {
+			super(in);
+			this.key = key;
+			this.props = props;
+			this.tmp = Files.createTempFile(dir, key, ".tmp");
+			this.out = Files.newOutputStream(tmp);
+		}
+	}
+
+	/**
+	 * Get the key of a location
+	 * 
+	 * @param location location
+	 * @return SHA-256 of the location
+	 */
+	private static String key(URL location) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(md.digest(location.toString().getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+	/**
+	 * Read the properties (ETag, Last-Modified...) of a cached file
+	 * 
+	 * @param key key
+	 * @return properties, or null when the file is not in the cache
+	 * @throws IOException 
+	 */
+	private Properties info(String key) throws IOException {
+		Path info = dir.resolve(key + INFO);
+		if (!Files.exists(info) || !Files.exists(dir.resolve(key + BODY))) {
+			return null;
+		}
+		Properties props = new Properties();
+		try (Reader r = Files.newBufferedReader(info)) {
+			props.load(r);
+		}
+		return props;
+	}
+
+	/**
+	 * Store a downloaded file in the cache
+	 * 
+	 * @param key key
+	 * @param props properties
+	 * @param tmp temporary file
+	 * @throws IOException 
+	 */
+	private void store(String key, Properties props, Path tmp) throws IOException {
+		Files.move(tmp, dir.resolve(key + BODY), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		try (Writer w = Files.newBufferedWriter(dir.resolve(key + INFO))) {
+			props.store(w, "HTTP cache");
+		}
+		fresh.add(key);
+		LOG.debug("Stored {} in cache", props.getProperty("url"));
+		evict();
+	}
+
+	/**
+	 * Open a cached file, marking it as recently used
+	 * 
+	 * @param key key
+	 * @return input stream
+	 * @throws IOException 
+	 */
+	private InputStream cached(String key) throws IOException {
+		Path body = dir.resolve(key + BODY);
+		Files.setLastModifiedTime(body, FileTime.fromMillis(System.currentTimeMillis()));
+		return Files.newInputStream(body);
+	}
+
+	/**
+	 * Remove the least recently used files until the cache is below the maximum size
+	 * 
+	 * @throws IOException 
+	 */
+	private synchronized void evict() throws IOException {
+		List<Path> bodies;
+		try (Stream<Path> files = Files.list(dir)) {
+			bodies = new ArrayList<>(files.filter(f -> f.toString().endsWith(BODY)).toList());
+		}
+		long total = 0;
+		for (Path p: bodies) {
+			total += Files.size(p);
+		}
+		if (total <= maxSize) {
+			return;
+		}
+		bodies.sort(Comparator.comparing(p -> {
+			try {
+				return Files.getLastModifiedTime(p);
+			} catch (IOException ioe) {
+				return FileTime.fromMillis(0);
+			}
+		}));
+		for (Path p: bodies) {
+			if (total <= maxSize) {
+				break;
+			}
+			String name = p.getFileName().toString();
+			String key = name.substring(0, name.length() - BODY.length());
+			total -= Files.size(p);
+			Files.deleteIfExists(p);
+			Files.deleteIfExists(dir.resolve(key + INFO));
+			fresh.remove(key);
+			LOG.debug("Evicted {} from cache", key);
+		}
+	}
+
+	/**
+	 * Open a local or remote file.
+	 * Remote files are revalidated using a conditional GET request, unless they were already fetched during this run.
+	 * 
+	 * @param location location of the file
+	 * @return input stream
+	 * @throws IOException 
+	 */
+	public InputStream open(URL location) throws IOException {
+		String protocol = location.getProtocol();
+		if (!protocol.equals("http") && !protocol.equals("https")) {
+			return location.openStream();
+		}
+
+		String key = key(location);
+		Properties cached = info(key);
+		if (cached != null && fresh.contains(key)) {
+			return cached(key);
+		}
+
+		HttpURLConnection http = (HttpURLConnection) location.openConnection();
+		if (cached != null) {
+			String etag = cached.getProperty("etag");
+			if (etag != null) {
+				http.setRequestProperty("If-None-Match", etag);
+			}
+			String modified = cached.getProperty("modified");
+			if (modified != null) {
+				http.setRequestProperty("If-Modified-Since", modified);
+			}
+		}
+
+		int code;
+		try {
+			code = http.getResponseCode();
+		} catch (IOException ioe) {
+			if (cached == null) {
+				throw ioe;
+			}
+			LOG.warn("Could not revalidate {}, using cached file: {}", location, ioe.getMessage());
+			return cached(key);
+		}
+
+		if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+			LOG.info("Using cached {}", location);
+			http.disconnect();
+			fresh.add(key);
+			return cached(key);
+		}
+		if (code != HttpURLConnection.HTTP_OK) {
+			http.disconnect();
+			throw new IOException("HTTP status " + code + " for " + location);
+		}
+
+		LOG.info("Downloading {}", location);
+		Properties props = new Properties();
+		props.setProperty("url", location.toString());
+		String etag = http.getHeaderField("ETag");
+		if (etag != null) {
+			props.setProperty("etag", etag);
+		}
+		String modified = http.getHeaderField("Last-Modified");
+		if (modified != null) {
+			props.setProperty("modified", modified);
+		}
+		return new TeeInputStream(http.getInputStream(), key, props);
+	}
+
+	/**
+	 * Download or revalidate multiple files concurrently, so they can be read from the cache afterwards
+	 * 
+	 * @param locations location of the files
+	 * @throws IOException 
+	 */
+	public void prefetch(URL[] locations) throws IOException {
+		if (locations.length < 2) {
+			return;
+		}
+		List<Future<Void>> futures = new ArrayList<>(locations.length);
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (URL location: locations) {
+				futures.add(executor.submit(() -> {
+					try (InputStream is = open(location)) {
+						is.transferTo(OutputStream.nullOutputStream());
+					}
+					return null;
+				}));
+			}
+			for (Future<Void> future: futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException ioe) {
+				throw ioe;
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dir cache directory, will be created if needed
+	 * @param maxSize maximum size of the cache in bytes
+	 * @throws IOException 
+	 */
+	public HttpCache(Path dir, long maxSize) throws IOException {
+		this.dir = Files.createDirectories(dir);
+		this.maxSize = maxSize;
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.vocabulary.RDF4J;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk cache of normalized SHACL shapes graphs, stored as binary RDF.
+ * 
+ * Entries are keyed by the location(s) of the SHACL files and their version, 
+ * i.e. the HTTP ETag or Last-Modified header, or a hash of the content.
+ * 
+ * @author Bart Hanssens
+ */
+public class ShapesCache {
+	private final static Logger LOG = LoggerFactory.getLogger(ShapesCache.class);
+
+	private final static String DATA = ".brf";
+	private final static String INFO = ".properties";
+
+	private final Path dir;
+
+	/**
+	 * Cache entry
+	 * 
+	 * @param key cache key
+	 * @param created creation time
+	 * @param size size in bytes
+	 * @param sources location of the SHACL files
+	 */
+	public record Entry(String key, Instant created, long size, String sources) { }
+
+	/**
+	 * Get a new SHA-256 digest
+	 * 
+	 * @return digest
+	 */
+	private static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+	/**
+	 * Get the version of a remote file using the HTTP ETag or Last-Modified headers
+	 * 
+	 * @param location remote location
+	 * @return version or null when not available
+	 * @throws IOException 
+	 */
+	private static String httpVersion(URL location) throws IOException {
+		URLConnection conn = location.openConnection();
+		if (!(conn instanceof HttpURLConnection http)) {
+			return null;
+		}
+		try {
+			http.setRequestMethod("HEAD");
+			if (http.getResponseCode() != HttpURLConnection.HTTP_OK) {
+				return null;
+			}
+			String etag = http.getHeaderField("ETag");
+			if (etag != null) {
+				return "etag:" + etag;
+			}
+			String modified = http.getHeaderField("Last-Modified");
+			return (modified != null) ? "modified:" + modified : null;
+		} finally {
+			http.disconnect();
+		}
+	}
+
+	/**
+	 * Get the version of a file using a hash of the content
+	 * 
+	 * @param location location of the file
+	 * @param httpCache download cache or null
+	 * @return version
+	 * @throws IOException 
+	 */
+	private static String contentVersion(URL location, HttpCache httpCache) throws IOException {
+		MessageDigest md = digest();
+		InputStream in = (httpCache != null) ? httpCache.open(location) : location.openStream();
+		try (InputStream is = new DigestInputStream(new BufferedInputStream(in), md)) {
+			is.transferTo(OutputStream.nullOutputStream());
+		}
+		return "sha256:" + HexFormat.of().formatHex(md.digest());
+	}
+
+	/**
+	 * Calculate the cache key for one or more SHACL files
+	 * 
+	 * @param locations location of the SHACL files
+	 * @param variant variant of the normalization applied to the shapes
+	 * @return key
+	 * @throws IOException 
+	 */
+	public String key(URL[] locations, String variant) throws IOException {
+		return key(locations, variant, null);
+	}
+
+	/**
+	 * Calculate the cache key for one or more SHACL files.
+	 * When a download cache is used, the content is hashed from the (revalidated) download cache,
+	 * so the files are not downloaded again to calculate the key.
+	 * 
+	 * @param locations location of the SHACL files
+	 * @param variant variant of the normalization applied to the shapes
+	 * @param httpCache download cache or null
+	 * @return key
+	 * @throws IOException 
+	 */
+	public String key(URL[] locations, String variant, HttpCache httpCache) throws IOException {
+		MessageDigest md = digest();
+		md.update(variant.getBytes(StandardCharsets.UTF_8));
+
+		if (httpCache != null) {
+			httpCache.prefetch(locations);
+		}
+		for (URL location: locations) {
+			String version = (httpCache == null) ? httpVersion(location) : null;
+			if (version == null) {
+				version = contentVersion(location, httpCache);
+			}
+			LOG.debug("Version of {} is {}", location, version);
+			md.update(("\n" + location + "\n" + version).getBytes(StandardCharsets.UTF_8));
+		}
+		return HexFormat.of().formatHex(md.digest());
+	}
+
+	/**
+	 * Load cached shapes into the SHACL shapes graph, if present
+	 * 
+	 * @param key cache key
+	 * @param conn repository connection
+	 * @return true if the shapes were found in the cache
+	 * @throws IOException 
+	 */
+	public boolean load(String key, RepositoryConnection conn) throws IOException {
+		Path p = dir.resolve(key + DATA);
+		if (!Files.exists(p)) {
+			LOG.info("Shapes not found in cache");
+			return false;
+		}
+		LOG.info("Loading shapes from cache {}", p);
+		try (InputStream is = new BufferedInputStream(Files.newInputStream(p))) {
+			conn.add(is, "", RDFFormat.BINARY, RDF4J.SHACL_SHAPE_GRAPH);
+		}
+		return true;
+	}
+
+	/**
+	 * Load cached shapes into a model, if present
+	 * 
+	 * @param key cache key
+	 * @param shapes model
+	 * @return true if the shapes were found in the cache
+	 * @throws IOException 
+	 */
+	public boolean load(String key, Model shapes) throws IOException {
+		Path p = dir.resolve(key + DATA);
+		if (!Files.exists(p)) {
+			LOG.info("Shapes not found in cache");
+			return false;
+		}
+		LOG.info("Loading shapes from cache {}", p);
+		try (InputStream is = new BufferedInputStream(Files.newInputStream(p))) {
+			shapes.addAll(Rio.parse(is, "", RDFFormat.BINARY));
+		}
+		return true;
+	}
+
+	/**
+	 * Store normalized shapes in the cache
+	 * 
+	 * @param key cache key
+	 * @param locations location(s) of the SHACL files
+	 * @param shapes shapes
+	 * @throws IOException 
+	 */
+	public void store(String key, URL[] locations, Iterable<Statement> shapes) throws IOException {
+		Path p = dir.resolve(key + DATA);
+		Path tmp = Files.createTempFile(dir, key, ".tmp");
+		try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+			Rio.write(shapes, os, RDFFormat.BINARY);
+		}
+		Files.move(tmp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		Properties props = new Properties();
+		props.setProperty("created", Instant.now().toString());
+		props.setProperty("sources", 
+			String.join(" ", Stream.of(locations).map(URL::toString).toList()));
+		try (Writer w = Files.newBufferedWriter(dir.resolve(key + INFO))) {
+			props.store(w, "SHACL shapes cache");
+		}
+		LOG.info("Stored shapes in cache {}", p);
+	}
+
+	/**
+	 * List the entries in the cache
+	 * 
+	 * @return list of entries
+	 * @throws IOException 
+	 */
+	public List<Entry> list() throws IOException {
+		List<Entry> entries = new ArrayList<>();
+
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path p: files.filter(f -> f.toString().endsWith(DATA)).sorted().toList()) {
+				String name = p.getFileName().toString();
+				String key = name.substring(0, name.length() - DATA.length());
+
+				Properties props = new Properties();
+				Path info = dir.resolve(key + INFO);
+				if (Files.exists(info)) {
+					try (Reader r = Files.newBufferedReader(info)) {
+						props.load(r);
+					}
+				}
+				Instant created = Instant.parse(props.getProperty("created", Instant.EPOCH.toString()));
+				entries.add(new Entry(key, created, Files.size(p), props.getProperty("sources", "")));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Remove all entries from the cache
+	 * 
+	 * @return number of entries removed
+	 * @throws IOException 
+	 */
+	public int purge() throws IOException {
+		int count = 0;
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path p: files.toList()) {
+				String name = p.getFileName().toString();
+				if (name.endsWith(DATA) || name.endsWith(INFO) || name.endsWith(".tmp")) {
+					Files.delete(p);
+					if (name.endsWith(DATA)) {
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dir cache directory, will be created if needed
+	 * @throws IOException 
+	 */
+	public ShapesCache(Path dir) throws IOException {
+		this.dir = Files.createDirectories(dir);
+	}
+}
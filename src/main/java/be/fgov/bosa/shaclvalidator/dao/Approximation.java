@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.dao;
+
+import be.fgov.bosa.shaclvalidator.sketch.HyperLogLog;
+
+/**
+ * Parameters of the approximate statistics on property values
+ * 
+ * @param distinctError relative standard error of the number of distinct values (e.g. 0.01)
+ * @param topK number of most frequent values reported per property
+ * @param frequencyError maximum overestimation of a count, relative to the number of values of the property
+ * 
+ * @author Bart Hanssens
+ */
+public record Approximation(double distinctError, int topK, double frequencyError) {
+	public final static Approximation DEFAULT = new Approximation(0.01, 20, 0.001);
+
+	/**
+	 * Get the number of HyperLogLog precision bits
+	 * 
+	 * @return precision
+	 */
+	public int precision() {
+		return HyperLogLog.precision(distinctError);
+	}
+
+	/**
+	 * Get the number of Space-Saving counters, at least the number of reported values
+	 * 
+	 * @return number of counters
+	 */
+	public int capacity() {
+		return Math.max(topK, (int) Math.ceil(1 / frequencyError));
+	}
+}
@@ -28,11 +28,12 @@ package be.fgov.bosa.shaclvalidator.dao;
 import java.util.List;
 
 /**
- * Helper record to collect validation results
+ * Helper record to collect validation results.
+ * The total can be higher than the number of issues, when only a sample of the issues was kept.
  * 
  * @author Bart Hanssens
  */
-public record ValidationInfo(String ID, String shape, String message, List<ValidationIssue> issues) 
+public record ValidationInfo(String ID, String shape, String message, List<ValidationIssue> issues, long total) 
 	implements Comparable<ValidationInfo> {
 
 	@Override
@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.helper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.ParserConfig;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.ParseErrorLogger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parse local N-Triples or N-Quads files in parallel.
+ * 
+ * The file is memory-mapped and split on line boundaries into chunks, which are parsed on a fork-join pool.
+ * Statements are passed in batches through a bounded queue to the RDF handler, on the calling thread
+ * (so the handler, e.g. an RDFInserter on a connection, doesn't need to be thread-safe).
+ * 
+ * The parsers use the parser configuration of the caller, which must preserve blank node IDs, 
+ * so the same blank node label in different chunks is the same node.
+ * 
+ * @author Bart Hanssens
+ */
+public class ChunkedParser {
+	private final static Logger LOG = LoggerFactory.getLogger(ChunkedParser.class);
+
+	public final static int CHUNK_SIZE = 8 * 1024 * 1024;
+	private final static int BATCH_SIZE = 10_000;
+	private final static int WINDOW = 64 * 1024;
+	private final static List<Statement> END = new ArrayList<>(0);
+
+	private final int threads;
+	private final int chunkSize;
+
+	/**
+	 * InputStream reading from a (memory-mapped) byte buffer
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.remaining());
+			buffer.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+	}
+
+	/**
+	 * Check if a file can be parsed in parallel: a local N-Triples or N-Quads file
+	 * 
+	 * @param location location of the file
+	 * @param format RDF format
+	 * @return boolean
+	 */
+	public static boolean supports(URL location, RDFFormat format) {
+		return "file".equals(location.getProtocol()) 
+				&& (format.equals(RDFFormat.NTRIPLES) || format.equals(RDFFormat.NQUADS));
+	}
+
+	/**
+	 * Get the path of a local file
+	 * 
+	 * @param location location of the file
+	 * @return path
+	 * @throws IOException 
+	 */
+	public static Path toPath(URL location) throws IOException {
+		try {
+			return Path.of(location.toURI());
+		} catch (URISyntaxException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Split the file into chunks, ending at a line boundary
+	 * 
+	 * @param channel file channel
+	 * @return list of start and end positions
+	 * @throws IOException 
+	 */
+	private List<long[]> split(FileChannel channel) throws IOException {
+		long size = channel.size();
+		List<long[]> chunks = new ArrayList<>();
+
+		long start = 0;
+		while (start < size) {
+			long end = Math.min(size, start + chunkSize);
+			// move to the end of the line
+			boolean found = (end == size);
+			while (!found) {
+				int len = (int) Math.min(WINDOW, size - end);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, end, len);
+				for (int i = 0; i < len && !found; i++) {
+					if (window.get(i) == '\n') {
+						end += i + 1;
+						found = true;
+					}
+				}
+				if (!found) {
+					end += len;
+					found = (end == size);
+				}
+			}
+			chunks.add(new long[] { start, end });
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Put a batch on the queue, unless parsing was aborted
+	 * 
+	 * @param queue queue
+	 * @param batch batch of statements
+	 * @param error first error, if any
+	 */
+	private static void put(BlockingQueue<List<Statement>> queue, List<Statement> batch, 
+							AtomicReference<Throwable> error) {
+		try {
+			while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				if (error.get() != null) {
+					throw new RDFHandlerException("Parsing aborted");
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RDFHandlerException(e);
+		}
+	}
+
+	/**
+	 * Parse a chunk
+	 * 
+	 * @param channel file channel
+	 * @param chunk start and end position
+	 * @param format RDF format
+	 * @param config parser configuration
+	 * @param queue queue
+	 * @param error first error, if any
+	 */
+	private static void parseChunk(FileChannel channel, long[] chunk, RDFFormat format, ParserConfig config,
+								BlockingQueue<List<Statement>> queue, AtomicReference<Throwable> error) {
+		if (error.get() != null) {
+			return;
+		}
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+
+			RDFParser parser = Rio.createParser(format);
+			parser.setParserConfig(config);
+			parser.setParseErrorListener(new ParseErrorLogger());
+			parser.setRDFHandler(new AbstractRDFHandler() {
+				private List<Statement> batch = new ArrayList<>(BATCH_SIZE);
+
+				@Override
+				public void handleStatement(Statement st) {
+					batch.add(st);
+					if (batch.size() >= BATCH_SIZE) {
+						put(queue, batch, error);
+						batch = new ArrayList<>(BATCH_SIZE);
+					}
+				}
+
+				@Override
+				public void endRDF() {
+					if (!batch.isEmpty()) {
+						put(queue, batch, error);
+					}
+				}
+			});
+			parser.parse(new ByteBufferInputStream(buffer));
+		} catch (IOException | RuntimeException e) {
+			error.compareAndSet(null, e);
+		}
+	}
+
+	/**
+	 * Parse a local N-Triples or N-Quads file, passing the statements to a handler on the calling thread.
+	 * 
+	 * @param file file
+	 * @param format RDF format
+	 * @param cfg parser configuration, preserving blank node IDs
+	 * @param handler RDF handler
+	 * @throws IOException 
+	 */
+	public void parse(Path file, RDFFormat format, ParserConfig cfg, RDFHandler handler) throws IOException {
+
+		BlockingQueue<List<Statement>> queue = new ArrayBlockingQueue<>(threads * 2);
+		AtomicReference<Throwable> error = new AtomicReference<>();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			List<long[]> chunks = split(channel);
+			LOG.info("Parsing {} chunks using {} threads", chunks.size(), threads);
+
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				pool.execute(() -> {
+					try {
+						chunks.parallelStream().forEach(c -> parseChunk(channel, c, format, cfg, queue, error));
+					} finally {
+						try {
+							queue.put(END);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+				});
+
+				handler.startRDF();
+				List<Statement> batch;
+				while ((batch = queue.take()) != END) {
+					for (Statement st: batch) {
+						handler.handleStatement(st);
+					}
+				}
+				if (error.get() != null) {
+					throw error.get() instanceof IOException ioe ? ioe : new IOException(error.get());
+				}
+				handler.endRDF();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (RuntimeException e) {
+				// let the parsers stop
+				error.compareAndSet(null, e);
+				throw e;
+			} finally {
+				queue.clear();
+				pool.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param threads number of threads
+	 * @param chunkSize approximate size of a chunk in bytes
+	 */
+	public ChunkedParser(int threads, int chunkSize) {
+		this.threads = threads;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param threads number of threads
+	 */
+	public ChunkedParser(int threads) {
+		this(threads, CHUNK_SIZE);
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.helper;
+
+import be.fgov.bosa.shaclvalidator.dao.CountedThing;
+import be.fgov.bosa.shaclvalidator.dao.Coverage;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Count the number of instances of each class using each property (class x property matrix).
+ * 
+ * The statements may arrive in any order, so the classes and properties of each subject are written to disk
+ * and sorted by subject (removing duplicates), after which the matrix is calculated in a single pass.
+ * Classes and properties are numbered, and the counters are kept in one primitive array indexed by these numbers.
+ * 
+ * @author Bart Hanssens
+ */
+public class CoverageCounter implements Closeable {
+	private final static Logger LOG = LoggerFactory.getLogger(CoverageCounter.class);
+
+	private final static int RUN_SIZE = 1_000_000;
+
+	private final Map<Value, Integer> classIds = new HashMap<>();
+	private final Map<IRI, Integer> propertyIds = new HashMap<>();
+	private final List<Value> classes = new ArrayList<>();
+	private final List<IRI> properties = new ArrayList<>();
+
+	private Path dir;
+	private ExternalSort sorter;
+
+	/**
+	 * Get the number of a class or property, numbering it when seen for the first time
+	 * 
+	 * @param <K>
+	 * @param ids map of numbers
+	 * @param list list of classes or properties
+	 * @param key class or property
+	 * @return number
+	 */
+	private static <K> int id(Map<K, Integer> ids, List<K> list, K key) {
+		return ids.computeIfAbsent(key, k -> {
+			list.add(k);
+			return list.size() - 1;
+		});
+	}
+
+	/**
+	 * Add a statement
+	 * 
+	 * @param st statement
+	 * @throws IOException 
+	 */
+	public void add(Statement st) throws IOException {
+		if (sorter == null) {
+			dir = Files.createTempDirectory("coverage");
+			sorter = new ExternalSort(dir, RUN_SIZE);
+		}
+		// subject, tab, then c or p followed by the number of the class or property
+		String subject = st.getSubject().toString();
+		IRI predicate = st.getPredicate();
+		sorter.add(subject + "\tp" + id(propertyIds, properties, predicate));
+		if (predicate.equals(RDF.TYPE)) {
+			sorter.add(subject + "\tc" + id(classIds, classes, st.getObject()));
+		}
+	}
+
+	/**
+	 * Get the name of a class or property
+	 * 
+	 * @param value IRI (or literal for invalid class values)
+	 * @return name, using a prefix when possible
+	 */
+	private static String name(Value value) {
+		return (value instanceof IRI iri) ? Util.prefixedIRI(iri) : value.stringValue();
+	}
+
+	/**
+	 * Add the classes and properties of a subject to the counters
+	 * 
+	 * @param counts counters, indexed by class number times number of properties plus property number
+	 * @param instances number of instances per class
+	 * @param cls classes of the subject
+	 * @param props properties of the subject
+	 */
+	private void count(long[] counts, long[] instances, BitSet cls, BitSet props) {
+		int nrProps = properties.size();
+		for (int c = cls.nextSetBit(0); c >= 0; c = cls.nextSetBit(c + 1)) {
+			instances[c]++;
+			for (int p = props.nextSetBit(0); p >= 0; p = props.nextSetBit(p + 1)) {
+				counts[c * nrProps + p]++;
+			}
+		}
+		cls.clear();
+		props.clear();
+	}
+
+	/**
+	 * Get the number of instances using each property, per class
+	 * 
+	 * @return list of classes with their properties
+	 * @throws IOException 
+	 */
+	public List<Coverage> getCoverage() throws IOException {
+		List<Coverage> coverage = new ArrayList<>(classes.size());
+		if (sorter == null || classes.isEmpty()) {
+			return coverage;
+		}
+		int nrProps = properties.size();
+		long[] counts = new long[classes.size() * nrProps];
+		long[] instances = new long[classes.size()];
+
+		Path sorted = dir.resolve("sorted.txt");
+		sorter.sort(sorted);
+
+		BitSet cls = new BitSet(classes.size());
+		BitSet props = new BitSet(nrProps);
+		String prev = null;
+		try (BufferedReader r = Files.newBufferedReader(sorted, StandardCharsets.UTF_8)) {
+			String line;
+			while ((line = r.readLine()) != null) {
+				int tab = line.lastIndexOf('\t');
+				String subject = line.substring(0, tab);
+				if (!subject.equals(prev)) {
+					count(counts, instances, cls, props);
+					prev = subject;
+				}
+				int id = Integer.parseInt(line.substring(tab + 2));
+				if (line.charAt(tab + 1) == 'c') {
+					cls.set(id);
+				} else {
+					props.set(id);
+				}
+			}
+			count(counts, instances, cls, props);
+		}
+		Files.delete(sorted);
+
+		for (int c = 0; c < classes.size(); c++) {
+			List<CountedThing> list = new ArrayList<>();
+			for (int p = 0; p < nrProps; p++) {
+				long n = counts[c * nrProps + p];
+				if (n > 0) {
+					list.add(new CountedThing(name(properties.get(p)), n));
+				}
+			}
+			coverage.add(new Coverage(name(classes.get(c)), instances[c], list));
+		}
+		LOG.info("Coverage of {} classes and {} properties", classes.size(), nrProps);
+		return coverage;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (sorter != null) {
+			sorter.close();
+			sorter = null;
+			FileUtils.deleteDirectory(dir.toFile());
+		}
+	}
+}
@@ -43,10 +43,38 @@ public class DataGovStats {
 	public final static IRI NAME;
 	public final static IRI VALUE;
 	public final static IRI NUMBER;
+	public final static IRI PHASE;
+	public final static IRI SKIPPED_SHAPE;
+	public final static IRI WALL_TIME;
+	public final static IRI CPU_TIME;
+	public final static IRI TRIPLES;
+	public final static IRI THROUGHPUT;
+	public final static IRI PEAK_HEAP;
+	public final static IRI ALLOCATED;
+	public final static IRI DISTINCT_ERROR;
+	public final static IRI TOP_K;
+	public final static IRI FREQUENCY_ERROR;
+	public final static IRI RESULT_TOTAL;
+	public final static IRI SHAPE;
+	public final static IRI COMPONENT;
 
 	static {
 		NAME = Values.iri(NAMESPACE, "name");
 		VALUE = Values.iri(NAMESPACE, "value");
 		NUMBER = Values.iri(NAMESPACE, "number");
+		PHASE = Values.iri(NAMESPACE, "phase");
+		SKIPPED_SHAPE = Values.iri(NAMESPACE, "skippedShape");
+		WALL_TIME = Values.iri(NAMESPACE, "wallTime");
+		CPU_TIME = Values.iri(NAMESPACE, "cpuTime");
+		TRIPLES = Values.iri(NAMESPACE, "triples");
+		THROUGHPUT = Values.iri(NAMESPACE, "triplesPerSecond");
+		PEAK_HEAP = Values.iri(NAMESPACE, "peakHeap");
+		ALLOCATED = Values.iri(NAMESPACE, "allocated");
+		DISTINCT_ERROR = Values.iri(NAMESPACE, "distinctError");
+		TOP_K = Values.iri(NAMESPACE, "topK");
+		FREQUENCY_ERROR = Values.iri(NAMESPACE, "frequencyError");
+		RESULT_TOTAL = Values.iri(NAMESPACE, "resultTotal");
+		SHAPE = Values.iri(NAMESPACE, "shape");
+		COMPONENT = Values.iri(NAMESPACE, "component");
 	}
 }
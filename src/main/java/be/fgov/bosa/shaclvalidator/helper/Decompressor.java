@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.helper;
+
+import be.fgov.bosa.shaclvalidator.cache.HttpCache;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Transparent decompression of gzip and zip files.
+ * 
+ * Decompression runs on a separate thread, feeding the parser through a bounded pipe,
+ * so inflating and parsing the data are done in parallel.
+ * 
+ * @author Bart Hanssens
+ */
+public class Decompressor {
+	public final static String GZIP = ".gz";
+	public final static String ZIP = ".zip";
+
+	private final static int PIPE_SIZE = 1024 * 1024;
+
+	/**
+	 * Handler for a (decompressed) file
+	 */
+	@FunctionalInterface
+	public interface EntryHandler {
+		/**
+		 * Handle a file
+		 * 
+		 * @param is input stream, closed by the caller
+		 * @param name name of the (inner) file, used for guessing the format
+		 * @throws IOException 
+		 */
+		void handle(InputStream is, String name) throws IOException;
+	}
+
+	/**
+	 * Pipe fed by a decompression thread, passing decompression errors to the reader
+	 */
+	private static class Pipe extends FilterInputStream {
+		private final AtomicReference<IOException> error = new AtomicReference<>();
+		private final Thread thread;
+
+		private void check() throws IOException {
+			IOException e = error.get();
+			if (e != null) {
+				throw e;
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b < 0) {
+				check();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n < 0) {
+				check();
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			// stops the decompression thread when the reader stops early
+			super.close();
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			}
+		}
+
+		/**
+		 * Constructor
+		 * 
+		 * @param source compressed data
+		 * @throws IOException 
+		 */
+		Pipe(InputStream source) throws IOException {
+			super(new PipedInputStream(PIPE_SIZE));
+			PipedOutputStream out = new PipedOutputStream((PipedInputStream) in);
+			thread = Thread.ofPlatform().name("decompress").daemon().start(() -> {
+				try {
+					source.transferTo(out);
+				} catch (IOException e) {
+					error.compareAndSet(null, e);
+				} catch (RuntimeException e) {
+					error.compareAndSet(null, new IOException(e));
+				} finally {
+					// only close after recording the error, so the reader can't reach the end of the pipe without it
+					try {
+						out.close();
+					} catch (IOException e) {
+						error.compareAndSet(null, e);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Input stream that does not close the underlying stream, used for zip entries
+	 */
+	private static class EntryStream extends FilterInputStream {
+		@Override
+		public void close() {
+			// zip stream is closed after the last entry
+		}
+
+		EntryStream(InputStream in) {
+			super(in);
+		}
+	}
+
+	/**
+	 * Check if a file is compressed, based on its name
+	 * 
+	 * @param name file name
+	 * @return boolean
+	 */
+	public static boolean isCompressed(String name) {
+		String lower = name.toLowerCase();
+		return lower.endsWith(GZIP) || lower.endsWith(ZIP);
+	}
+
+	/**
+	 * Open a local or remote file, calling the handler for the decompressed content.
+	 * For zip files, the handler is called for every file in the archive.
+	 * 
+	 * @param location location of the file
+	 * @param handler handler
+	 * @throws IOException 
+	 */
+	public static void forEach(URL location, EntryHandler handler) throws IOException {
+		forEach(location, null, handler);
+	}
+
+	/**
+	 * Open a local or remote file, using a download cache, and call the handler for the decompressed content.
+	 * For zip files, the handler is called for every file in the archive.
+	 * 
+	 * @param location location of the file
+	 * @param cache HTTP download cache or null
+	 * @param handler handler
+	 * @throws IOException 
+	 */
+	public static void forEach(URL location, HttpCache cache, EntryHandler handler) throws IOException {
+		String name = location.getFile();
+		String lower = name.toLowerCase();
+
+		try (InputStream raw = new BufferedInputStream(cache != null ? cache.open(location) : location.openStream())) {
+			if (lower.endsWith(GZIP)) {
+				try (InputStream is = new Pipe(new GZIPInputStream(raw, 64 * 1024))) {
+					handler.handle(is, name.substring(0, name.length() - GZIP.length()));
+				}
+			} else if (lower.endsWith(ZIP)) {
+				ZipInputStream zip = new ZipInputStream(raw);
+				ZipEntry entry;
+				while ((entry = zip.getNextEntry()) != null) {
+					if (entry.isDirectory()) {
+						continue;
+					}
+					try (InputStream is = new Pipe(new EntryStream(zip))) {
+						handler.handle(is, entry.getName());
+					}
+				}
+			} else {
+				handler.handle(raw, name);
+			}
+		}
+	}
+}
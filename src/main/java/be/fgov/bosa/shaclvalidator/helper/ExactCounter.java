@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.helper;
+
+import be.fgov.bosa.shaclvalidator.dao.CountedThing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Exact counter of string values, keeping the values off-heap.
+ *
+ * Values are dictionary-encoded to integer IDs: the UTF-8 bytes are stored in a direct buffer,
+ * and the counts in a primitive array indexed by ID.
+ * When the buffer is full, the values and their counts are written to disk as a run sorted by value,
+ * and the runs are merged when the counts are requested.
+ *
+ * @author Bart Hanssens
+ */
+public class ExactCounter implements Closeable {
+	private final static Logger LOG = LoggerFactory.getLogger(ExactCounter.class);
+
+	// heap used per ID: offset, hash, count and on average two hash table slots
+	private final static int BYTES_PER_ID = 4 + 4 + 8 + 2 * 4;
+
+	private final ByteBuffer values;
+	private final int maxIds;
+	private int[] table;
+	private int[] offsets;
+	private int[] hashes;
+	private long[] counts;
+	private int size = 0;
+
+	private Path dir;
+	private final List<Path> runs = new ArrayList<>();
+
+	/**
+	 * Value and count read from a sorted run
+	 */
+	private record Head(byte[] value, long count, DataInputStream in) {}
+
+	/**
+	 * Hash the UTF-8 bytes of a value (FNV-1a, followed by the MurmurHash3 finalizer)
+	 *
+	 * @param bytes bytes
+	 * @return hash
+	 */
+	private static int hash(byte[] bytes) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b: bytes) {
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+	/**
+	 * Check if the value with a given ID has the same bytes
+	 *
+	 * @param id ID
+	 * @param bytes bytes
+	 * @return true if equal
+	 */
+	private boolean equals(int id, byte[] bytes) {
+		int off = offsets[id];
+		if (values.getInt(off) != bytes.length) {
+			return false;
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			if (values.get(off + 4 + i) != bytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Get the bytes of the value with a given ID
+	 *
+	 * @param id ID
+	 * @return bytes
+	 */
+	private byte[] bytes(int id) {
+		int off = offsets[id];
+		byte[] bytes = new byte[values.getInt(off)];
+		values.get(off + 4, bytes);
+		return bytes;
+	}
+
+	/**
+	 * Double the size of the hash table and the arrays indexed by ID
+	 */
+	private void grow() {
+		int[] t = new int[table.length * 2];
+		int mask = t.length - 1;
+		for (int id = 0; id < size; id++) {
+			int slot = hashes[id] & mask;
+			while (t[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			t[slot] = id + 1;
+		}
+		table = t;
+		// keep the load factor of the hash table at most 0.5
+		offsets = Arrays.copyOf(offsets, table.length / 2);
+		hashes = Arrays.copyOf(hashes, table.length / 2);
+		counts = Arrays.copyOf(counts, table.length / 2);
+	}
+
+	/**
+	 * Add one occurrence of a value
+	 *
+	 * @param value string value
+	 * @throws IOException when the values could not be written to disk
+	 */
+	public void add(String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length + 4 > values.capacity()) {
+			throw new IOException("Value of " + bytes.length + " bytes exceeds the memory of the counter");
+		}
+		if (size == offsets.length) {
+			grow();
+		}
+		int h = hash(bytes);
+		int mask = table.length - 1;
+		int slot = h & mask;
+		int id;
+		while ((id = table[slot]) != 0) {
+			if (hashes[id - 1] == h && equals(id - 1, bytes)) {
+				counts[id - 1]++;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if (values.remaining() < bytes.length + 4 || size >= maxIds) {
+			spill();
+			add(value);
+			return;
+		}
+		id = size++;
+		offsets[id] = values.position();
+		hashes[id] = h;
+		counts[id] = 1;
+		values.putInt(bytes.length);
+		values.put(bytes);
+		table[slot] = id + 1;
+	}
+
+	/**
+	 * Get a view on the bytes of the value with a given ID, without copying them
+	 *
+	 * @param id ID
+	 * @return buffer
+	 */
+	private ByteBuffer slice(int id) {
+		int off = offsets[id];
+		return values.slice(off + 4, values.getInt(off));
+	}
+
+	/**
+	 * Get the IDs sorted by the bytes of their value, in the same order as {@link Arrays#compare(byte[], byte[])}
+	 *
+	 * @return sorted IDs
+	 */
+	private Integer[] sortedIds() {
+		Integer[] ids = new Integer[size];
+		for (int id = 0; id < size; id++) {
+			ids[id] = id;
+		}
+		Arrays.sort(ids, (a, b) -> slice(a).compareTo(slice(b)));
+		return ids;
+	}
+
+	/**
+	 * Write the values and counts as a run sorted by value, and clear the dictionary
+	 *
+	 * @throws IOException
+	 */
+	private void spill() throws IOException {
+		if (size == 0) {
+			return;
+		}
+		if (dir == null) {
+			dir = Files.createTempDirectory("counts");
+		}
+		Path run = Files.createTempFile(dir, "run", ".bin");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+			for (int id: sortedIds()) {
+				byte[] bytes = bytes(id);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+				out.writeLong(counts[id]);
+			}
+		}
+		LOG.info("Spilled {} values to {}", size, run);
+		runs.add(run);
+
+		values.clear();
+		Arrays.fill(table, 0);
+		size = 0;
+	}
+
+	/**
+	 * Read the next value and count from a run
+	 *
+	 * @param in input stream
+	 * @return head or null at the end of the run
+	 * @throws IOException
+	 */
+	private static Head read(DataInputStream in) throws IOException {
+		int len;
+		try {
+			len = in.readInt();
+		} catch (EOFException eof) {
+			return null;
+		}
+		byte[] bytes = in.readNBytes(len);
+		return new Head(bytes, in.readLong(), in);
+	}
+
+	/**
+	 * Get the values with their count, merging the runs written to disk (if any)
+	 *
+	 * @return list of counted values
+	 * @throws IOException
+	 */
+	public List<CountedThing> getCounts() throws IOException {
+		List<CountedThing> list = new ArrayList<>(size);
+		if (runs.isEmpty()) {
+			for (int id = 0; id < size; id++) {
+				list.add(new CountedThing(new String(bytes(id), StandardCharsets.UTF_8), counts[id]));
+			}
+			return list;
+		}
+		spill();
+
+		PriorityQueue<Head> heads = new PriorityQueue<>(runs.size(),
+										Comparator.comparing(Head::value, Arrays::compare));
+		List<DataInputStream> inputs = new ArrayList<>(runs.size());
+		try {
+			for (Path run: runs) {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+				inputs.add(in);
+				Head head = read(in);
+				if (head != null) {
+					heads.add(head);
+				}
+			}
+			byte[] prev = null;
+			long count = 0;
+			while (!heads.isEmpty()) {
+				Head head = heads.poll();
+				if (prev != null && !Arrays.equals(prev, head.value())) {
+					list.add(new CountedThing(new String(prev, StandardCharsets.UTF_8), count));
+					count = 0;
+				}
+				prev = head.value();
+				count += head.count();
+				Head next = read(head.in());
+				if (next != null) {
+					heads.add(next);
+				}
+			}
+			if (prev != null) {
+				list.add(new CountedThing(new String(prev, StandardCharsets.UTF_8), count));
+			}
+		} finally {
+			for (DataInputStream in: inputs) {
+				in.close();
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Remove all values and counts
+	 *
+	 * @throws IOException
+	 */
+	public void clear() throws IOException {
+		close();
+		values.clear();
+		Arrays.fill(table, 0);
+		size = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		runs.clear();
+		if (dir != null) {
+			FileUtils.deleteDirectory(dir.toFile());
+			dir = null;
+		}
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param memory maximum number of bytes used for storing the values, and again for the IDs and counts
+	 */
+	public ExactCounter(int memory) {
+		this.values = ByteBuffer.allocateDirect(memory);
+		this.maxIds = Math.max(1024, memory / BYTES_PER_ID);
+		this.table = new int[1024];
+		this.offsets = new int[512];
+		this.hashes = new int[512];
+		this.counts = new long[512];
+	}
+}
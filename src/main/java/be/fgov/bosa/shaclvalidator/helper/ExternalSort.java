@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.helper;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sort (and deduplicate) lines of text that may not fit in memory, 
+ * by writing sorted runs to temporary files and merging them
+ * 
+ * @author Bart Hanssens
+ */
+public class ExternalSort implements Closeable {
+	private final Path dir;
+	private final int runSize;
+	private final List<String> buffer = new ArrayList<>();
+	private final List<Path> runs = new ArrayList<>();
+
+	/**
+	 * Line read from a sorted run
+	 */
+	private record Head(String line, BufferedReader reader) {}
+
+	/**
+	 * Write the buffered lines as a sorted run
+	 * 
+	 * @throws IOException 
+	 */
+	private void flush() throws IOException {
+		if (buffer.isEmpty()) {
+			return;
+		}
+		buffer.sort(null);
+		Path run = Files.createTempFile(dir, "run", ".txt");
+		Files.write(run, buffer, StandardCharsets.UTF_8);
+		runs.add(run);
+		buffer.clear();
+	}
+
+	/**
+	 * Add a line, which must not contain line breaks
+	 * 
+	 * @param line line
+	 * @throws IOException 
+	 */
+	public void add(String line) throws IOException {
+		buffer.add(line);
+		if (buffer.size() >= runSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Write all lines, sorted and without duplicates
+	 * 
+	 * @param out output file
+	 * @throws IOException 
+	 */
+	public void sort(Path out) throws IOException {
+		flush();
+
+		PriorityQueue<Head> heads = new PriorityQueue<>(Math.max(1, runs.size()), Comparator.comparing(Head::line));
+		List<BufferedReader> readers = new ArrayList<>(runs.size());
+		try (BufferedWriter w = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+			for (Path run: runs) {
+				BufferedReader r = Files.newBufferedReader(run, StandardCharsets.UTF_8);
+				readers.add(r);
+				String line = r.readLine();
+				if (line != null) {
+					heads.add(new Head(line, r));
+				}
+			}
+			String prev = null;
+			while (!heads.isEmpty()) {
+				Head head = heads.poll();
+				if (!head.line().equals(prev)) {
+					w.write(head.line());
+					w.newLine();
+					prev = head.line();
+				}
+				String line = head.reader().readLine();
+				if (line != null) {
+					heads.add(new Head(line, head.reader()));
+				}
+			}
+		} finally {
+			for (BufferedReader r: readers) {
+				r.close();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (Path run: runs) {
+			Files.deleteIfExists(run);
+		}
+		runs.clear();
+		buffer.clear();
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param dir directory for temporary files
+	 * @param runSize maximum number of lines kept in memory
+	 */
+	public ExternalSort(Path dir, int runSize) {
+		this.dir = dir;
+		this.runSize = runSize;
+	}
+}
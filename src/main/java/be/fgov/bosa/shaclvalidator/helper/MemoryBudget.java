@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.helper;
+
+import java.net.URL;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Global memory budget, preventing large files from being validated concurrently.
+ * 
+ * The memory needed is estimated based upon the size of the file.
+ * A file larger than the entire budget can still be validated, but not concurrently with other files.
+ * 
+ * @author Bart Hanssens
+ */
+public class MemoryBudget {
+	private final static Logger LOG = LoggerFactory.getLogger(MemoryBudget.class);
+
+	// rough estimate of the heap needed for an in-memory store compared to the size of the (uncompressed) file
+	public final static int EXPANSION = 10;
+	// rough compression ratio of gzipped or zipped RDF
+	public final static int COMPRESSION = 10;
+	private final static long MB = 1024 * 1024;
+
+	private final int total;
+	private final int unknown;
+	private final Semaphore permits;
+
+	/**
+	 * Estimate the memory needed (in MB) to validate a file
+	 * 
+	 * @param location location of the file
+	 * @return number of MB
+	 */
+	private int estimate(URL location) {
+		long length = Util.contentLength(location);
+		if (length < 0) {
+			return unknown;
+		}
+		if (Decompressor.isCompressed(location.getFile())) {
+			length *= COMPRESSION;
+		}
+		return (int) Math.max(1, Math.min(total, (length * EXPANSION) / MB));
+	}
+
+	/**
+	 * Reserve memory for validating a file, waiting until enough memory is available
+	 * 
+	 * @param location location of the file
+	 * @return number of MB reserved
+	 * @throws InterruptedException 
+	 */
+	public int acquire(URL location) throws InterruptedException {
+		int mb = estimate(location);
+		LOG.debug("Reserving {} MB for {}", mb, location);
+		permits.acquire(mb);
+		return mb;
+	}
+
+	/**
+	 * Release memory that was reserved before
+	 * 
+	 * @param mb number of MB
+	 */
+	public void release(int mb) {
+		permits.release(mb);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param total total budget in MB
+	 * @param threads number of threads, used to estimate files of unknown size
+	 */
+	public MemoryBudget(int total, int threads) {
+		this.total = Math.max(1, total);
+		this.unknown = Math.max(1, this.total / Math.max(1, threads));
+		this.permits = new Semaphore(this.total, true);
+	}
+}
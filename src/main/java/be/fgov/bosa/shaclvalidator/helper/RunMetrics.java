@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.helper;
+
+import be.fgov.bosa.shaclvalidator.dao.PhaseMetric;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.RDFHandlerWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Wall time, CPU time, throughput, peak heap and allocated bytes of the phases of a run
+ * (loading shapes, parsing, validation, statistics, reports).
+ *
+ * CPU time and allocated bytes are measured for the entire JVM, so they include the worker threads
+ * used for parsing, but also the other files being validated in parallel in batch mode.
+ * The peak heap is the highest heap usage sampled while the phase was running, without resetting the peak usage
+ * of the memory pools, so phases running at the same time (e.g. in batch or sharded mode) don't affect each other.
+ *
+ * @author Bart Hanssens
+ */
+public class RunMetrics {
+	private final static Logger LOG = LoggerFactory.getLogger(RunMetrics.class);
+
+	private final static com.sun.management.OperatingSystemMXBean OS =
+		(com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+	private final static com.sun.management.ThreadMXBean THREADS =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+	private final static List<MemoryPoolMXBean> HEAP = ManagementFactory.getMemoryPoolMXBeans().stream()
+															.filter(p -> p.getType() == MemoryType.HEAP)
+															.toList();
+
+	// interval for sampling the heap usage of the running phases
+	private final static long SAMPLE_MILLIS = 20;
+
+	/**
+	 * Sampler of the heap usage of the running phases, only started when the first phase is recorded
+	 */
+	private static class HeapSampler {
+		private final static Set<Phase> RUNNING = ConcurrentHashMap.newKeySet();
+		private final static ScheduledExecutorService SAMPLER = Executors.newSingleThreadScheduledExecutor(
+								r -> Thread.ofPlatform().name("heap-sampler").daemon().unstarted(r));
+
+		static {
+			SAMPLER.scheduleAtFixedRate(HeapSampler::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Update the peak heap usage of the running phases
+		 */
+		private static void sample() {
+			long used = usedHeap();
+			for (Phase phase: RUNNING) {
+				phase.peak.accumulateAndGet(used, Math::max);
+			}
+		}
+	}
+
+	/**
+	 * Metrics that are not recorded, used when nobody is interested in them
+	 */
+	public final static RunMetrics DISABLED = new RunMetrics(false);
+
+	private final boolean enabled;
+	private final List<PhaseMetric> phases = new ArrayList<>();
+	private final LongAdder triples = new LongAdder();
+
+	/**
+	 * A running phase, recorded when closed
+	 */
+	public class Phase implements AutoCloseable {
+		private final String name;
+		private final long wall;
+		private final long cpu;
+		private final long allocated;
+		private final AtomicLong peak = new AtomicLong();
+		private long count = 0;
+
+		/**
+		 * Set the number of triples processed during this phase
+		 *
+		 * @param count number of triples
+		 */
+		public void setTriples(long count) {
+			this.count = count;
+		}
+
+		@Override
+		public void close() {
+			if (!enabled) {
+				return;
+			}
+			HeapSampler.RUNNING.remove(this);
+			peak.accumulateAndGet(usedHeap(), Math::max);
+			PhaseMetric m = new PhaseMetric(name,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wall),
+				TimeUnit.NANOSECONDS.toMillis(OS.getProcessCpuTime() - cpu),
+				count,
+				peak.get(),
+				THREADS.getTotalThreadAllocatedBytes() - allocated);
+			LOG.info("Phase {}: {} ms wall, {} ms CPU, {} triples", name, m.wallMillis(), m.cpuMillis(), count);
+			synchronized (phases) {
+				phases.add(m);
+			}
+		}
+
+		private Phase(String name) {
+			this.name = name;
+			if (enabled) {
+				peak.set(usedHeap());
+				HeapSampler.RUNNING.add(this);
+			}
+			this.wall = System.nanoTime();
+			this.cpu = enabled ? OS.getProcessCpuTime() : 0;
+			this.allocated = enabled ? THREADS.getTotalThreadAllocatedBytes() : 0;
+		}
+	}
+
+	/**
+	 * Get the current heap usage, as the sum of the heap memory pools
+	 *
+	 * @return number of bytes
+	 */
+	private static long usedHeap() {
+		return HEAP.stream().mapToLong(p -> p.getUsage().getUsed()).sum();
+	}
+
+	/**
+	 * Start a phase, which is recorded when closed
+	 *
+	 * @param name name of the phase
+	 * @return phase
+	 */
+	public Phase start(String name) {
+		return new Phase(name);
+	}
+
+	/**
+	 * Add phases that were recorded before, e.g. loading the shapes shared by multiple data files
+	 *
+	 * @param previous phases
+	 */
+	public void addAll(List<PhaseMetric> previous) {
+		synchronized (phases) {
+			phases.addAll(previous);
+		}
+	}
+
+	/**
+	 * Get the phases recorded so far
+	 *
+	 * @return copy of the list of phases
+	 */
+	public List<PhaseMetric> getPhases() {
+		synchronized (phases) {
+			return List.copyOf(phases);
+		}
+	}
+
+	/**
+	 * Get the number of triples counted by {@link #count(RDFHandler)}
+	 *
+	 * @return number of triples
+	 */
+	public long getTriples() {
+		return triples.sum();
+	}
+
+	/**
+	 * Count the statements passed to an RDF handler
+	 *
+	 * @param listener RDF handler, or null
+	 * @return counting RDF handler
+	 */
+	public RDFHandler count(RDFHandler listener) {
+		RDFHandler counter = new AbstractRDFHandler() {
+			@Override
+			public void handleStatement(Statement st) {
+				triples.increment();
+			}
+		};
+		return (listener == null) ? counter : new RDFHandlerWrapper(counter, listener);
+	}
+
+	/**
+	 * Write the metrics as JSON
+	 *
+	 * @param writer writer
+	 * @param data location of the data
+	 * @throws IOException
+	 */
+	public void writeJson(Writer writer, URL data) throws IOException {
+		writer.write("{\n  \"data\": " + Util.jsonString(data.toString()) + ",\n");
+		writer.write("  \"triples\": " + getTriples() + ",\n");
+		writer.write("  \"phases\": [");
+		List<PhaseMetric> list = getPhases();
+		for (int i = 0; i < list.size(); i++) {
+			PhaseMetric m = list.get(i);
+			writer.write((i > 0) ? ",\n    {" : "\n    {");
+			writer.write("\"name\": " + Util.jsonString(m.name()));
+			writer.write(", \"wallMillis\": " + m.wallMillis());
+			writer.write(", \"cpuMillis\": " + m.cpuMillis());
+			writer.write(", \"triples\": " + m.triples());
+			writer.write(", \"triplesPerSecond\": " + m.triplesPerSecond());
+			writer.write(", \"peakHeap\": " + m.peakHeap());
+			writer.write(", \"allocated\": " + m.allocated() + "}");
+		}
+		writer.write("\n  ]\n}\n");
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param enabled record the phases or not
+	 */
+	private RunMetrics(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Constructor
+	 */
+	public RunMetrics() {
+		this(true);
+	}
+}
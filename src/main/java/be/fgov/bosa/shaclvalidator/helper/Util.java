@@ -25,10 +25,24 @@
  */
 package be.fgov.bosa.shaclvalidator.helper;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Namespace;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.impl.SimpleNamespace;
 import org.eclipse.rdf4j.model.util.Values;
@@ -40,6 +54,7 @@ import org.eclipse.rdf4j.model.vocabulary.PROV;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.RDFS;
 import org.eclipse.rdf4j.model.vocabulary.ROV;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
 import org.eclipse.rdf4j.model.vocabulary.SKOS;
 import org.eclipse.rdf4j.model.vocabulary.VCARD4;
 import org.eclipse.rdf4j.model.vocabulary.annotation.DQV;
@@ -89,6 +104,19 @@ public class Util {
 		return iri.stringValue();
 	}
 
+	/**
+	 * Expand a (property) name into an IRI, using the "known" prefixes if it is not a full IRI
+	 * 
+	 * @param name full IRI or prefixed name
+	 * @return IRI
+	 */
+	public static IRI expandIRI(String name) {
+		if (name.startsWith("http://") || name.startsWith("https://") ) {
+			return Values.iri(name);
+		}
+		return Values.iri(Util.NS, name);
+	}
+
 	/**
 	 * Return IRI or literal.
 	 * If the value starts with http, https or mailto, it is assumed to be an IRI.
@@ -102,4 +130,100 @@ public class Util {
 		}
 		return Values.literal(val);
 	}
+
+	/**
+	 * Get the size of a local or remote file, without downloading it.
+	 * 
+	 * @param location location of the file
+	 * @return size in bytes, or -1 if unknown
+	 */
+	public static long contentLength(URL location) {
+		try {
+			if ("file".equals(location.getProtocol())) {
+				return Files.size(Path.of(location.toURI()));
+			}
+			URLConnection conn = location.openConnection();
+			if (conn instanceof HttpURLConnection http) {
+				try {
+					http.setRequestMethod("HEAD");
+					return http.getContentLengthLong();
+				} finally {
+					http.disconnect();
+				}
+			}
+			return conn.getContentLengthLong();
+		} catch (IOException | URISyntaxException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Copy a resource and all blank nodes it refers to, e.g. a validation result and its details
+	 * 
+	 * @param from source model
+	 * @param to target model
+	 * @param start resource to copy
+	 */
+	public static void copyResource(Model from, Model to, Resource start) {
+		Set<Resource> visited = new HashSet<>();
+		Deque<Resource> todo = new ArrayDeque<>();
+		todo.push(start);
+
+		while (!todo.isEmpty()) {
+			Resource r = todo.pop();
+			if (!visited.add(r)) {
+				continue;
+			}
+			for (Statement st: from.getStatements(r, null, null)) {
+				to.add(st);
+				if (st.getObject().isBNode()) {
+					todo.push((Resource) st.getObject());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy a validation result and its details, and the description of its source shape (if not copied yet),
+	 * which contains the severity and messages of the shape
+	 * 
+	 * @param from source model
+	 * @param to target model
+	 * @param result validation result to copy
+	 */
+	public static void copyResult(Model from, Model to, Resource result) {
+		copyResource(from, to, result);
+		for (Value shape: from.filter(result, SHACL.SOURCE_SHAPE, null).objects()) {
+			if (shape.isIRI() && !to.contains((Resource) shape, null, null)) {
+				copyResource(from, to, (Resource) shape);
+			}
+		}
+	}
+
+	/**
+	 * Quote and escape a string for use in JSON
+	 * 
+	 * @param str string
+	 * @return quoted string
+	 */
+	public static String jsonString(String str) {
+		StringBuilder sb = new StringBuilder(str.length() + 2).append('"');
+		for (char c: str.toCharArray()) {
+			switch (c) {
+				case '"' -> sb.append("\\\"");
+				case '\\' -> sb.append("\\\\");
+				case '\n' -> sb.append("\\n");
+				case '\r' -> sb.append("\\r");
+				case '\t' -> sb.append("\\t");
+				default -> {
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+				}
+			}
+		}
+		return sb.append('"').toString();
+	}
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for calculating one statistic (classes, properties, values)
+ * 
+ * @author Bart Hanssens
+ */
+@Name("be.fgov.bosa.shaclvalidator.Statistics")
+@Label("Statistics")
+@Category("SHACL Validator")
+@Description("Calculating one statistic: classes, properties or values")
+public class StatisticsEvent extends Event {
+	@Label("Metric")
+	public String metric;
+
+	@Label("Items")
+	@Description("Number of different classes, properties or properties with values")
+	public long items;
+
+	/**
+	 * End the event and commit it, if enabled
+	 * 
+	 * @param metric name of the metric
+	 * @param items number of items
+	 */
+	public void end(String metric, long items) {
+		end();
+		if (shouldCommit()) {
+			this.metric = metric;
+			this.items = items;
+			commit();
+		}
+	}
+
+	/**
+	 * Create and begin an event
+	 * 
+	 * @return event
+	 */
+	public static StatisticsEvent start() {
+		StatisticsEvent event = new StatisticsEvent();
+		event.begin();
+		return event;
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.reports;
+
+import be.fgov.bosa.shaclvalidator.dao.Approximation;
+import be.fgov.bosa.shaclvalidator.dao.CountedThing;
+import be.fgov.bosa.shaclvalidator.dao.Coverage;
+import be.fgov.bosa.shaclvalidator.dao.PhaseMetric;
+import be.fgov.bosa.shaclvalidator.helper.Util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+
+/**
+ * Validation report in JSON, written as one object per line without building an intermediate model.
+ *
+ * Each validation result, statistic and run metric is a separate object with a "type" member,
+ * followed by the metadata of the run.
+ * The objects are either written as newline-delimited JSON, or as the elements of a JSON array.
+ *
+ * @author Bart Hanssens
+ */
+public class JsonReport implements Report {
+	private final boolean array;
+	private ReportIndex index;
+	private URL data;
+	private URL[] shacls;
+	private Map<String, Object> stats = Map.of();
+	private List<PhaseMetric> phases = List.of();
+	private List<String> skipped = List.of();
+
+	private Writer writer;
+	private boolean first;
+
+	/**
+	 * Convert an RDF value to a JSON string, blank nodes are prefixed with "_:"
+	 *
+	 * @param value value or null
+	 * @return JSON string or null
+	 */
+	private static String json(Value value) {
+		if (value == null) {
+			return "null";
+		}
+		return Util.jsonString(value instanceof BNode ? value.toString() : value.stringValue());
+	}
+
+	/**
+	 * Convert a string to a JSON string
+	 *
+	 * @param str string or null
+	 * @return JSON string or null
+	 */
+	private static String json(String str) {
+		return (str == null) ? "null" : Util.jsonString(str);
+	}
+
+	/**
+	 * Write a JSON object
+	 *
+	 * @param type type of the object
+	 * @param members members, already serialized as JSON
+	 * @throws IOException
+	 */
+	private void object(String type, String... members) throws IOException {
+		if (array) {
+			writer.write(first ? "[\n" : ",\n");
+		}
+		first = false;
+		writer.write("{\"type\": ");
+		writer.write(Util.jsonString(type));
+		for (int i = 0; i < members.length; i += 2) {
+			writer.write(", ");
+			writer.write(Util.jsonString(members[i]));
+			writer.write(": ");
+			writer.write(members[i + 1]);
+		}
+		writer.write(array ? "}" : "}\n");
+	}
+
+	/**
+	 * Write the validation results, grouped by source shape and constraint component, 
+	 * and the number of results per shape and component
+	 *
+	 * @throws IOException
+	 */
+	private void writeResults() throws IOException {
+		for (ReportIndex.Group group: index.getGroups()) {
+			String s = json(group.shape());
+			for (ReportIndex.Result r: index.getResults(group)) {
+				object("result",
+					"focusNode", json(r.focusNode()),
+					"path", json(r.path()),
+					"component", json(r.component()),
+					"severity", json(r.severity()),
+					"value", json(r.value()),
+					"sourceShape", s);
+			}
+			object("shape",
+				"shape", s,
+				"component", json(group.component()),
+				"results", String.valueOf(index.getResults(group).size()),
+				"total", String.valueOf(index.getTotal(group)));
+		}
+	}
+
+	/**
+	 * Write counted items
+	 *
+	 * @param type type of the objects
+	 * @param counted list of counted items
+	 * @throws IOException
+	 */
+	private void writeCounted(String type, List<CountedThing> counted) throws IOException {
+		for (CountedThing c: counted) {
+			object(type, "name", json(c.name()), "number", String.valueOf(c.number()));
+		}
+	}
+
+	/**
+	 * Write the statistics
+	 *
+	 * @throws IOException
+	 */
+	private void writeStatistics() throws IOException {
+		if (stats.containsKey("classes")) {
+			writeCounted("class", (List<CountedThing>) stats.get("classes"));
+		}
+		if (stats.containsKey("properties")) {
+			writeCounted("property", (List<CountedThing>) stats.get("properties"));
+		}
+		if (stats.containsKey("values")) {
+			Map<String, List<CountedThing>> values = (Map<String, List<CountedThing>>) stats.get("values");
+			for (Map.Entry<String, List<CountedThing>> e: values.entrySet()) {
+				String property = json(e.getKey());
+				for (CountedThing c: e.getValue()) {
+					object("value", "property", property, "value", json(c.name()),
+						"number", String.valueOf(c.number()));
+				}
+			}
+		}
+		if (stats.containsKey("distinct")) {
+			writeCounted("distinct", (List<CountedThing>) stats.get("distinct"));
+		}
+		if (stats.containsKey("approximation")) {
+			Approximation a = (Approximation) stats.get("approximation");
+			object("approximation",
+				"distinctError", String.valueOf(a.distinctError()),
+				"topK", String.valueOf(a.topK()),
+				"frequencyError", String.valueOf(a.frequencyError()));
+		}
+		if (stats.containsKey("coverage")) {
+			for (Coverage c: (List<Coverage>) stats.get("coverage")) {
+				String name = json(c.name());
+				for (CountedThing p: c.properties()) {
+					object("coverage", "class", name, "instances", String.valueOf(c.instances()),
+						"property", json(p.name()), "number", String.valueOf(p.number()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the timing and resource usage of the phases of the run
+	 *
+	 * @throws IOException
+	 */
+	private void writeMetrics() throws IOException {
+		for (PhaseMetric m: phases) {
+			object("phase",
+				"name", json(m.name()),
+				"wallMillis", String.valueOf(m.wallMillis()),
+				"cpuMillis", String.valueOf(m.cpuMillis()),
+				"triples", String.valueOf(m.triples()),
+				"triplesPerSecond", String.valueOf(m.triplesPerSecond()),
+				"peakHeap", String.valueOf(m.peakHeap()),
+				"allocated", String.valueOf(m.allocated()));
+		}
+	}
+
+	/**
+	 * Write metadata about the validation
+	 *
+	 * @throws IOException
+	 */
+	private void writeMetadata() throws IOException {
+		for (String shape: skipped) {
+			object("skipped", "shape", json(shape));
+		}
+		StringBuilder conformsTo = new StringBuilder("[");
+		for (int i = 0; i < shacls.length; i++) {
+			conformsTo.append((i > 0) ? ", " : "").append(json(shacls[i].toString()));
+		}
+		conformsTo.append("]");
+
+		String conforms = "null";
+		if (index.getReport() != null) {
+			conforms = index.getProperty(index.getReport(), SHACL.CONFORMS)
+							.filter(Literal.class::isInstance)
+							.map(v -> String.valueOf(((Literal) v).booleanValue()))
+							.orElse("null");
+		}
+		object("metadata",
+			"issued", json(LocalDateTime.now().toString()),
+			"source", json(data.toString()),
+			"conformsTo", conformsTo.toString(),
+			"conforms", conforms);
+	}
+
+	@Override
+	public void reportValidation(ReportIndex index, URL data, URL[] shacls) {
+		this.index = index;
+		this.data = data;
+		this.shacls = shacls;
+	}
+
+	@Override
+	public void reportStatistics(Map<String, Object> stats) {
+		this.stats = stats;
+	}
+
+	@Override
+	public void reportSkippedShapes(List<String> shapes) {
+		this.skipped = shapes;
+	}
+
+	@Override
+	public void reportMetrics(List<PhaseMetric> phases) {
+		this.phases = phases;
+	}
+
+	@Override
+	public void write(Writer writer) throws IOException {
+		this.writer = writer;
+		this.first = true;
+		writeResults();
+		writeStatistics();
+		writeMetrics();
+		writeMetadata();
+		if (array) {
+			writer.write("\n]\n");
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param array write a JSON array instead of newline-delimited JSON
+	 */
+	public JsonReport(boolean array) {
+		this.array = array;
+	}
+}
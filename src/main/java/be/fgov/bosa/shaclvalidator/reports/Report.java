@@ -25,9 +25,12 @@
  */
 package be.fgov.bosa.shaclvalidator.reports;
 
+import be.fgov.bosa.shaclvalidator.dao.PhaseMetric;
+
 import java.io.IOException;
 import java.io.Writer;
 import java.net.URL;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.rdf4j.model.Model;
@@ -44,7 +47,19 @@ public interface Report {
 	 * @param data location of the data
 	 * @param shacls location(s) of the SHACL rules
 	 */
-	public void reportValidation(Model issues, URL data, URL[] shacls);
+	public default void reportValidation(Model issues, URL data, URL[] shacls) {
+		reportValidation(new ReportIndex(issues), data, shacls);
+	}
+
+	/**
+	 * Report validation issues, using an index of the validation report.
+	 * The same index can be shared by multiple reports.
+	 * 
+	 * @param index index of the validation issues
+	 * @param data location of the data
+	 * @param shacls location(s) of the SHACL rules
+	 */
+	public void reportValidation(ReportIndex index, URL data, URL[] shacls);
 	
 	/**
 	 * Report the statistics
@@ -53,6 +68,20 @@ public interface Report {
 	 */
 	public void reportStatistics(Map<String,Object> stats);
 
+	/**
+	 * Report the shapes that were skipped, i.e. not selected for validation
+	 * 
+	 * @param shapes description of the skipped shapes
+	 */
+	public void reportSkippedShapes(List<String> shapes);
+
+	/**
+	 * Report the timing and resource usage of the phases of the run so far
+	 * 
+	 * @param phases phases
+	 */
+	public void reportMetrics(List<PhaseMetric> phases);
+
 	/**
 	 * Write the report
 	 * 
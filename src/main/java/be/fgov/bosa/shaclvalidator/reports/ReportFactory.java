@@ -38,10 +38,25 @@ public class ReportFactory {
 	 * @return 
 	 */
 	public static Report createReport(String format) {
+		return createReport(format, false);
+	}
+
+	/**
+	 * Create a report based on file format, optionally a streaming variant 
+	 * which writes the report incrementally
+	 * 
+	 * @param format
+	 * @param streaming
+	 * @return 
+	 */
+	public static Report createReport(String format, boolean streaming) {
 		return switch(format) {
-			case "html" -> new TemplatedReport("html");
-			case "md" -> new TemplatedReport("md");
-			case "ttl" -> new TurtleReport();
+			case "html" -> streaming ? new StreamingTemplatedReport("html") : new TemplatedReport("html");
+			case "md" -> streaming ? new StreamingTemplatedReport("md") : new TemplatedReport("md");
+			case "ttl" -> streaming ? new StreamingTurtleReport() : new TurtleReport();
+			// always written incrementally
+			case "json" -> new JsonReport(true);
+			case "ndjson" -> new JsonReport(false);
 			default -> null;
 		};
 	}
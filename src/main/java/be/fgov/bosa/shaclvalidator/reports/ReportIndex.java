@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.reports;
+
+import be.fgov.bosa.shaclvalidator.helper.DataGovStats;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.WriterConfig;
+import org.eclipse.rdf4j.rio.helpers.BasicWriterSettings;
+
+/**
+ * Index of a SHACL validation report, built in a single pass over the report model.
+ * 
+ * Validation results are grouped by source shape and constraint component, since a shape can have multiple
+ * constraints (e.g. sh:minCount and sh:datatype on the same property).
+ * The (Turtle) snippets of the shapes are rendered only once, so building a report grows linearly 
+ * with the number of results.
+ * 
+ * @author Bart Hanssens
+ */
+public class ReportIndex {
+	/**
+	 * Validation result
+	 * 
+	 * @param id ID of the result
+	 * @param focusNode focus node
+	 * @param path result path (if any)
+	 * @param component source constraint component
+	 * @param severity severity
+	 * @param value value (if any)
+	 */
+	public record Result(Resource id, Value focusNode, Value path, IRI component, IRI severity, Value value) { }
+
+	/**
+	 * Source shape and constraint component of validation results
+	 * 
+	 * @param shape source shape
+	 * @param component source constraint component (if any)
+	 */
+	public record Group(Resource shape, IRI component) { }
+
+	private final Model model;
+	private Resource report;
+	private final Map<Resource, List<Statement>> descriptions = new HashMap<>();
+	private final Map<Group, List<Result>> resultsByGroup = new LinkedHashMap<>();
+	private final Map<Resource, String> snippets = new HashMap<>();
+	private final Map<Group, Long> totals = new HashMap<>();
+
+	/**
+	 * Get the description (i.e. the statements) of a subject
+	 * 
+	 * @param subject subject
+	 * @return list of statements, can be empty
+	 */
+	public List<Statement> getDescription(Resource subject) {
+		return descriptions.getOrDefault(subject, Collections.emptyList());
+	}
+
+	/**
+	 * Get the first value of a property of a subject
+	 * 
+	 * @param subject subject
+	 * @param property property
+	 * @return value
+	 */
+	public Optional<Value> getProperty(Resource subject, IRI property) {
+		for (Statement st: getDescription(subject)) {
+			if (st.getPredicate().equals(property)) {
+				return Optional.of(st.getObject());
+			}
+		}
+		return Optional.empty();
+	}
+
+	/**
+	 * Get the first IRI value of a property of a subject
+	 * 
+	 * @param subject subject
+	 * @param property property
+	 * @return IRI
+	 */
+	public Optional<IRI> getPropertyIRI(Resource subject, IRI property) {
+		return getProperty(subject, property).filter(IRI.class::isInstance).map(IRI.class::cast);
+	}
+
+	/**
+	 * Get the ID of the sh:ValidationReport
+	 * 
+	 * @return ID
+	 */
+	public Resource getReport() {
+		return report;
+	}
+
+	/**
+	 * Get the underlying report model
+	 * 
+	 * @return model
+	 */
+	public Model getModel() {
+		return model;
+	}
+
+	/**
+	 * Get the IDs of the shapes being violated, in order of appearance
+	 * 
+	 * @return set of shape IDs
+	 */
+	public Set<Resource> getShapes() {
+		Set<Resource> shapes = new LinkedHashSet<>();
+		for (Group group: resultsByGroup.keySet()) {
+			shapes.add(group.shape());
+		}
+		return shapes;
+	}
+
+	/**
+	 * Get the shapes and constraint components being violated, in order of appearance
+	 * 
+	 * @return set of shape and component pairs
+	 */
+	public Set<Group> getGroups() {
+		return resultsByGroup.keySet();
+	}
+
+	/**
+	 * Get the validation results of a shape and constraint component
+	 * 
+	 * @param group shape and component
+	 * @return list of results
+	 */
+	public List<Result> getResults(Group group) {
+		return resultsByGroup.getOrDefault(group, Collections.emptyList());
+	}
+
+	/**
+	 * Get the number of results of a shape and constraint component, which can be higher than the number 
+	 * of results in the report when the report only contains a sample of the results
+	 * 
+	 * @param group shape and component
+	 * @return number of results
+	 */
+	public long getTotal(Group group) {
+		return totals.getOrDefault(group, (long) getResults(group).size());
+	}
+
+	/**
+	 * Get the shape as a (cached) Turtle string, with some embedding of additional details
+	 * 
+	 * @param shape shape ID
+	 * @return turtle string
+	 */
+	public String getShapeString(Resource shape) {
+		return snippets.computeIfAbsent(shape, s -> {
+			Model m = new LinkedHashModel();
+			m.setNamespace(SHACL.NS);
+			m.addAll(getDescription(s));
+
+			// add more detail
+			getProperty(s, SHACL.NODE).filter(Resource.class::isInstance).ifPresent(node -> {
+				List<Statement> description = getDescription((Resource) node);
+				m.addAll(description);
+				for (Statement st: description) {
+					if (st.getPredicate().equals(SHACL.PROPERTY) && st.getObject() instanceof Resource prop) {
+						m.addAll(getDescription(prop));
+					}
+				}
+			});
+			StringWriter sw = new StringWriter();
+			WriterConfig config = new WriterConfig();
+			config.set(BasicWriterSettings.PRETTY_PRINT, true);
+			config.set(BasicWriterSettings.INLINE_BLANK_NODES, true);
+			Rio.write(m, sw, RDFFormat.TURTLE, config);
+			return sw.toString();
+		});
+	}
+
+	/**
+	 * Create a result from the description of a validation result
+	 * 
+	 * @param id ID of the result
+	 * @return result
+	 */
+	private Result toResult(Resource id) {
+		Value focusNode = null;
+		Value path = null;
+		IRI component = null;
+		IRI severity = SHACL.VIOLATION;
+		Value value = null;
+
+		for (Statement st: getDescription(id)) {
+			IRI p = st.getPredicate();
+			Value o = st.getObject();
+			if (p.equals(SHACL.FOCUS_NODE)) {
+				focusNode = o;
+			} else if (p.equals(SHACL.RESULT_PATH)) {
+				path = o;
+			} else if (p.equals(SHACL.SOURCE_CONSTRAINT_COMPONENT) && o instanceof IRI iri) {
+				component = iri;
+			} else if (p.equals(SHACL.RESULT_SEVERITY) && o instanceof IRI iri) {
+				severity = iri;
+			} else if (p.equals(SHACL.VALUE)) {
+				value = o;
+			}
+		}
+		return new Result(id, focusNode, path, component, severity, value);
+	}
+
+	/**
+	 * Constructor, indexing the report in a single pass
+	 * 
+	 * @param model validation report
+	 */
+	public ReportIndex(Model model) {
+		this.model = model;
+
+		Map<Resource, Resource> shapeOfResult = new LinkedHashMap<>();
+		for (Statement st: model) {
+			Resource subj = st.getSubject();
+			descriptions.computeIfAbsent(subj, k -> new ArrayList<>()).add(st);
+
+			if (st.getPredicate().equals(SHACL.SOURCE_SHAPE) && st.getObject() instanceof Resource shape) {
+				shapeOfResult.put(subj, shape);
+			} else if (report == null && st.getPredicate().equals(RDF.TYPE) 
+					&& st.getObject().equals(SHACL.VALIDATION_REPORT)) {
+				report = subj;
+			}
+		}
+		shapeOfResult.forEach((id, shape) -> {
+			Result result = toResult(id);
+			resultsByGroup.computeIfAbsent(new Group(shape, result.component()), k -> new ArrayList<>()).add(result);
+		});
+
+		// exact number of results per shape and component, added when the results were sampled
+		if (report != null) {
+			for (Statement st: getDescription(report)) {
+				if (st.getPredicate().equals(DataGovStats.RESULT_TOTAL) && st.getObject() instanceof Resource t) {
+					Optional<Value> shape = getProperty(t, DataGovStats.SHAPE);
+					Optional<IRI> component = getPropertyIRI(t, DataGovStats.COMPONENT);
+					Optional<Value> number = getProperty(t, DataGovStats.NUMBER);
+					if (shape.isPresent() && shape.get() instanceof Resource s 
+							&& number.isPresent() && number.get() instanceof Literal l) {
+						totals.merge(new Group(s, component.orElse(null)), l.longValue(), Long::sum);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.reports;
+
+import be.fgov.bosa.shaclvalidator.helper.DataGovStats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.util.Values;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reduce a validation report to a sample of results per shape and constraint component,
+ * adding the exact number of distinct focus nodes with results to the report.
+ * 
+ * The sample consists of the first results, in the order of the report, so it is the same for every run.
+ * Dropped results are removed together with the blank nodes only they refer to (e.g. a sh:resultPath list).
+ * Each total is added to the report as a node with the shape, the component and the number of focus nodes,
+ * linked to the sh:ValidationReport.
+ * A focus node can have multiple results for the same constraint (e.g. one per invalid value), 
+ * but it is only counted once.
+ * 
+ * @author Bart Hanssens
+ */
+public class ResultSampler {
+	private final static Logger LOG = LoggerFactory.getLogger(ResultSampler.class);
+
+	/**
+	 * Shape and constraint component
+	 */
+	private record Key(Resource shape, IRI component) { }
+
+	/**
+	 * Remove a resource and, recursively, the blank nodes that are not referred to by anything else
+	 * 
+	 * @param report validation report
+	 * @param start resource to remove
+	 */
+	private static void remove(Model report, Resource start) {
+		Deque<Resource> todo = new ArrayDeque<>();
+		todo.push(start);
+		while (!todo.isEmpty()) {
+			Resource r = todo.pop();
+			List<Value> objects = List.copyOf(report.filter(r, null, null).objects());
+			report.remove(r, null, null);
+			for (Value v: objects) {
+				if (v.isBNode() && !report.contains(null, null, v)) {
+					todo.push((Resource) v);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keep a sample of the results of each shape and component, and add the totals
+	 * 
+	 * @param report validation report, modified in place
+	 * @param size maximum number of results kept per shape and component
+	 * @param limit maximum number of results reported by the SHACL Sail per shape and component
+	 * @return same validation report
+	 */
+	public static Model sample(Model report, int size, int limit) {
+		Resource id = Models.subject(report.filter(null, RDF.TYPE, SHACL.VALIDATION_REPORT)).orElse(null);
+		if (id == null) {
+			return report;
+		}
+		Map<Key, long[]> counts = new LinkedHashMap<>();
+		Map<Key, Set<Value>> focusNodes = new HashMap<>();
+		List<Resource> dropped = new ArrayList<>();
+
+		for (Value v: report.filter(id, SHACL.RESULT, null).objects()) {
+			Resource result = (Resource) v;
+			Resource shape = Models.getPropertyResource(report, result, SHACL.SOURCE_SHAPE).orElse(null);
+			IRI component = Models.getPropertyIRI(report, result, SHACL.SOURCE_CONSTRAINT_COMPONENT).orElse(null);
+			Key key = new Key(shape, component);
+			Models.object(report.filter(result, SHACL.FOCUS_NODE, null)).ifPresent(focus -> 
+				focusNodes.computeIfAbsent(key, k -> new HashSet<>()).add(focus));
+			long[] count = counts.computeIfAbsent(key, k -> new long[1]);
+			if (++count[0] > size) {
+				dropped.add(result);
+			}
+		}
+		for (Resource result: dropped) {
+			report.remove(id, SHACL.RESULT, result);
+			remove(report, result);
+		}
+		counts.forEach((k, count) -> {
+			if (k.shape() == null || k.component() == null) {
+				return;
+			}
+			if (limit > 0 && count[0] >= limit) {
+				LOG.warn("Limit of {} results reached for {} {}, total is a lower bound", limit, k.shape(), k.component());
+			}
+			BNode node = Values.bnode();
+			report.add(id, DataGovStats.RESULT_TOTAL, node);
+			report.add(node, DataGovStats.SHAPE, k.shape());
+			report.add(node, DataGovStats.COMPONENT, k.component());
+			report.add(node, DataGovStats.NUMBER, Values.literal(focusNodes.getOrDefault(k, Set.of()).size()));
+		});
+		LOG.info("Kept {} results as sample, {} shape/component totals", 
+					counts.values().stream().mapToLong(c -> Math.min(c[0], size)).sum(), counts.size());
+		return report;
+	}
+}
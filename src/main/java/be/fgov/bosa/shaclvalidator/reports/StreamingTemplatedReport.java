@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.reports;
+
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+
+/**
+ * Validation report based upon a text template, written section by section.
+ * 
+ * Contrary to {@link TemplatedReport}, the validation issues of a shape and constraint component are only created 
+ * when they are written, instead of putting all issues into the template context first.
+ * The report index, and thus the validation report model, is still kept in memory.
+ * 
+ * @author Bart Hanssens
+ */
+public class StreamingTemplatedReport extends TemplatedReport {
+	private ReportIndex index;
+
+	@Override
+	public void reportValidation(ReportIndex index, URL data, URL[] shacls) {
+		this.index = index;
+		putGeneralInfo(data, shacls);
+	}
+
+	/**
+	 * Write a section (errors, warnings, recommendations), one shape at a time
+	 * 
+	 * @param template template
+	 * @param writer writer
+	 * @param section name of the section
+	 * @param groups shapes and constraint components
+	 * @throws IOException 
+	 */
+	private void writeSection(PebbleTemplate template, Writer writer, String section, 
+			List<ReportIndex.Group> groups) throws IOException {
+		context.put("section", section);
+		context.put("count", groups.size());
+		template.evaluateBlock("sectionStart", writer, context);
+
+		for (ReportIndex.Group group: groups) {
+			context.put("item", getInfo(index, group));
+			template.evaluateBlock("shape", writer, context);
+		}
+		context.remove("item");
+
+		template.evaluateBlock("sectionEnd", writer, context);
+	}
+
+	@Override
+	public void write(Writer writer) throws IOException {
+		PebbleTemplate template = engine.getTemplate("report." + format);
+
+		List<ReportIndex.Group> errors = new ArrayList<>();
+		List<ReportIndex.Group> warnings = new ArrayList<>();
+		List<ReportIndex.Group> infos = new ArrayList<>();
+
+		for (ReportIndex.Group group: index.getGroups()) {
+			IRI severity = getSeverity(index, group.shape());
+			if (severity.equals(SHACL.VIOLATION)) {
+				errors.add(group);
+			} else if (severity.equals(SHACL.WARNING)) {
+				warnings.add(group);
+			} else if (severity.equals(SHACL.INFO)) {
+				infos.add(group);
+			}	
+		}
+		// same order as the non-streaming report
+		errors.sort(Comparator.comparing(s -> getMessage(index, s)));
+
+		template.evaluateBlock("header", writer, context);
+		writeSection(template, writer, "error", errors);
+		writeSection(template, writer, "warning", warnings);
+		writeSection(template, writer, "recommendation", infos);
+		template.evaluateBlock("statistics", writer, context);
+		template.evaluateBlock("metrics", writer, context);
+		template.evaluateBlock("footer", writer, context);
+	}
+
+	/**
+	 * Constructor
+	 * @param format 
+	 */
+	public StreamingTemplatedReport(String format) {
+		super(format);
+	}
+}
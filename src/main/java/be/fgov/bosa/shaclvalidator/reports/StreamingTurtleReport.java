@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.reports;
+
+import be.fgov.bosa.shaclvalidator.dao.PhaseMetric;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFWriter;
+import org.eclipse.rdf4j.rio.Rio;
+
+/**
+ * Validation report in RDF/Turtle, written statement by statement 
+ * instead of copying the validation results and statistics into another model first.
+ * 
+ * @author Bart Hanssens
+ */
+public class StreamingTurtleReport extends TurtleReport {
+	private ReportIndex index;
+	private URL data;
+	private URL[] shacls;
+	private Map<String, Object> stats = Map.of();
+	private List<PhaseMetric> phases = List.of();
+	private List<String> skipped = List.of();
+
+	@Override
+	public void reportValidation(ReportIndex index, URL data, URL[] shacls) {
+		this.index = index;
+		this.data = data;
+		this.shacls = shacls;
+	}
+
+	@Override
+	public void reportStatistics(Map<String, Object> stats) {
+		this.stats = stats;
+	}
+
+	@Override
+	public void reportSkippedShapes(List<String> shapes) {
+		this.skipped = shapes;
+	}
+
+	@Override
+	public void reportMetrics(List<PhaseMetric> phases) {
+		this.phases = phases;
+	}
+
+	@Override
+	public void write(Writer writer) throws IOException {
+		RDFWriter w = Rio.createWriter(RDFFormat.TURTLE, writer);
+		w.startRDF();
+		for (Statement st: index.getModel()) {
+			w.handleStatement(st);
+		}
+		addMetadata(w, index.getReport(), data, shacls);
+		addSkippedShapes(w, index.getReport(), skipped);
+		addStatistics(w, stats);
+		addMetrics(w, phases);
+		w.endRDF();
+	}
+}
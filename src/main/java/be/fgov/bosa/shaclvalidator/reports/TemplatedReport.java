@@ -26,6 +26,7 @@
 package be.fgov.bosa.shaclvalidator.reports;
 
 import be.fgov.bosa.shaclvalidator.helper.Util;
+import be.fgov.bosa.shaclvalidator.dao.PhaseMetric;
 import be.fgov.bosa.shaclvalidator.dao.ValidationInfo;
 import be.fgov.bosa.shaclvalidator.dao.ValidationIssue;
 
@@ -33,120 +34,122 @@ import io.pebbletemplates.pebble.PebbleEngine;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.eclipse.rdf4j.model.IRI;
-import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Namespace;
 import org.eclipse.rdf4j.model.Resource;
-import org.eclipse.rdf4j.model.Value;
-import org.eclipse.rdf4j.model.impl.LinkedHashModel;
-import org.eclipse.rdf4j.model.util.Models;
-import org.eclipse.rdf4j.model.util.Values;
 import org.eclipse.rdf4j.model.vocabulary.SHACL;
-import org.eclipse.rdf4j.rio.RDFFormat;
-import org.eclipse.rdf4j.rio.Rio;
-import org.eclipse.rdf4j.rio.WriterConfig;
-import org.eclipse.rdf4j.rio.helpers.BasicWriterSettings;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Validation report based upon a text template
+ * Validation report based upon a text template.
+ * 
+ * The template contains blocks for the header, the start and end of each section (errors, warnings, 
+ * recommendations), each shape and constraint component, the statistics, the metrics and the footer.
+ * Evaluating the whole template loops over the sections, {@link StreamingTemplatedReport} evaluates 
+ * the blocks one by one.
  * 
  * @author Bart Hanssens
  */
 public class TemplatedReport implements Report {
 	private final static Logger LOG = LoggerFactory.getLogger(TemplatedReport.class);
 
-	private final static PebbleEngine engine = new PebbleEngine.Builder().build();
+	protected final static PebbleEngine engine = new PebbleEngine.Builder().build();
 	
-	private final String format;
-	private final Map<String, Object> context = new HashMap<>();
+	protected final String format;
+	protected final Map<String, Object> context = new HashMap<>();
 
 	/**
-	 * Get the shape as a string, with some embedding of additional details
+	 * Get the severity of a shape, default is violation
 	 * 
-	 * @param issues model with all issues
+	 * @param index report index
 	 * @param shapeID ID of the shape
-	 * @return turtle result as string
+	 * @return severity
 	 */
-	private String getShapeString(Model issues, Resource shapeID) {
-		Model m = new LinkedHashModel();
-		m.setNamespace(SHACL.NS);
-
-		Model shape = issues.filter(shapeID, null, null);
-		m.addAll(shape);
-
-		// add more detail
-		Resource res = Models.getPropertyResource(shape, shapeID, SHACL.NODE).orElse(null);
-		if (res != null) {
-			Model node = issues.filter(res, null, null);
-			m.addAll(node);
-			Set<Resource> props = Models.getPropertyResources(node, res, SHACL.PROPERTY);
-			for(Resource prop: props) {
-				m.addAll(issues.filter(prop, null, null));
-			}
+	protected static IRI getSeverity(ReportIndex index, Resource shapeID) {
+		return index.getPropertyIRI(shapeID, SHACL.SEVERITY_PROP).orElse(SHACL.VIOLATION);
+	}
+
+	/**
+	 * Get the summary message of a shape and constraint component, i.e. the path (if any) and the component
+	 * 
+	 * @param index report index
+	 * @param group shape and constraint component
+	 * @return message
+	 */
+	protected static String getMessage(ReportIndex index, ReportIndex.Group group) {
+		String component = (group.component() != null) ? group.component().getLocalName() : "n/a";
+
+		IRI path = index.getPropertyIRI(group.shape(), SHACL.PATH).orElse(null);
+		return (path != null) ? Util.prefixedIRI(path) + " " + component : component;
+	}
+
+	/**
+	 * Get the validation issues of a shape and constraint component
+	 * 
+	 * @param index report index
+	 * @param group shape and constraint component
+	 * @return validation info
+	 */
+	protected static ValidationInfo getInfo(ReportIndex index, ReportIndex.Group group) {
+		String na = "n/a";
+		Resource shapeID = group.shape();
+		String str = index.getShapeString(shapeID);
+			
+		List<ReportIndex.Result> results = index.getResults(group);
+		List<ValidationIssue> violations = new ArrayList<>(results.size());
+			
+		for(ReportIndex.Result r: results) {
+			ValidationIssue issue = new ValidationIssue(
+				r.focusNode().stringValue(),
+				(r.component() != null) ? r.component().getLocalName() : na,
+				(r.value() != null) ? r.value().stringValue() : na
+			);
+			violations.add(issue);
 		}
-		StringWriter sw = new StringWriter();
-		WriterConfig config = new WriterConfig();
-		config.set(BasicWriterSettings.PRETTY_PRINT, true);
-		config.set(BasicWriterSettings.INLINE_BLANK_NODES, true);
-		Rio.write(m, sw, RDFFormat.TURTLE, config);
-		return sw.toString();
+		return new ValidationInfo(shapeID.stringValue(), str, getMessage(index, group), violations, 
+									index.getTotal(group));
+	}
+
+	/**
+	 * Put general info about the validation into the template context
+	 * 
+	 * @param data location of the data
+	 * @param shacls location(s) of the SHACL rules
+	 */
+	protected void putGeneralInfo(URL data, URL[] shacls) {
+		context.put("data", data.toString());
+		context.put("shacls", Arrays.asList(shacls).stream().map(URL::toString).collect(Collectors.toList()));
+		context.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
 	}
 
 	@Override
-	public void reportValidation(Model issues, URL data, URL[] shacls) {
-		Value na = Values.literal("n/a");
+	public void reportValidation(ReportIndex index, URL data, URL[] shacls) {
 		for (Namespace ns: Util.NS) {
-			issues.setNamespace(ns);
+			index.getModel().setNamespace(ns);
 		}
 
 		List<ValidationInfo> errors = new ArrayList<>();
 		List<ValidationInfo> warnings = new ArrayList<>();
 		List<ValidationInfo> infos = new ArrayList<>();
 
-		// IDs of shapes being violated
-		Set<Value> shapeIDs = issues.filter(null, SHACL.SOURCE_SHAPE, null).objects();
-		
-		for (Value shapeID: shapeIDs) {
-			String str = getShapeString(issues, (Resource) shapeID);
-			
-			Set<Resource> violationIDs = issues.filter(null, SHACL.SOURCE_SHAPE, shapeID).subjects();
-			List<ValidationIssue> violations = new ArrayList<>(violationIDs.size());
-			
-			for(Resource violationID: violationIDs) {
-				Model violation = issues.filter(violationID, null, null);
-				
-				ValidationIssue issue = new ValidationIssue(
-					(Models.getPropertyResource(violation, violationID, SHACL.FOCUS_NODE).get()).stringValue(),
-					(Models.getPropertyIRI(violation, violationID, SHACL.SOURCE_CONSTRAINT_COMPONENT).get()).getLocalName(),
-					Models.getProperty(violation, violationID, SHACL.VALUE).orElse(na).stringValue()
-				);
-				violations.add(issue);
-			}
-			// all validation issues are actually on same component
-			String component = violations.get(0).component();
-
-			IRI path = Models.getPropertyIRI(issues, (Resource) shapeID, SHACL.PATH).orElse(null);
-			String msg = (path != null) ? Util.prefixedIRI(path) + " " + component : component;
-
-			ValidationInfo result = new ValidationInfo(shapeID.stringValue(), str, msg, violations);
-			// check severity, default is violation
-			IRI severity = Models.getPropertyIRI(issues, (Resource) shapeID, SHACL.SEVERITY_PROP).orElse(SHACL.VIOLATION);
+		// shapes and constraint components being violated
+		for (ReportIndex.Group group: index.getGroups()) {
+			ValidationInfo result = getInfo(index, group);
+			IRI severity = getSeverity(index, group.shape());
 
 			if (severity.equals(SHACL.VIOLATION)) {
 				errors.add(result);
@@ -161,12 +164,12 @@ public class TemplatedReport implements Report {
 		LOG.info("Shapes with warnings: {}", warnings.size());
 		LOG.info("Shapes with recommendations: {}", infos.size());
 		
-		context.put("data", data.toString());
-		context.put("shacls", Arrays.asList(shacls).stream().map(URL::toString).collect(Collectors.toList()));
-		context.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")));
-		context.put("errors", errors);
-		context.put("warnings", warnings);
-		context.put("infos", infos);
+		putGeneralInfo(data, shacls);
+		Collections.sort(errors);
+		context.put("sections", List.of(
+			Map.of("name", "error", "items", errors),
+			Map.of("name", "warning", "items", warnings),
+			Map.of("name", "recommendation", "items", infos)));
 	}
 
 
@@ -175,6 +178,16 @@ public class TemplatedReport implements Report {
 		context.putAll(stats);
 	}
 
+	@Override
+	public void reportSkippedShapes(List<String> shapes) {
+		context.put("skipped", shapes);
+	}
+
+	@Override
+	public void reportMetrics(List<PhaseMetric> phases) {
+		context.put("metrics", phases);
+	}
+
 	@Override
 	public void write(Writer writer) throws IOException {
 		PebbleTemplate template = engine.getTemplate("report." + format);
@@ -26,7 +26,10 @@
 package be.fgov.bosa.shaclvalidator.reports;
 
 import be.fgov.bosa.shaclvalidator.helper.Util;
+import be.fgov.bosa.shaclvalidator.dao.Approximation;
 import be.fgov.bosa.shaclvalidator.dao.CountedThing;
+import be.fgov.bosa.shaclvalidator.dao.Coverage;
+import be.fgov.bosa.shaclvalidator.dao.PhaseMetric;
 import be.fgov.bosa.shaclvalidator.helper.DataGovStats;
 import be.fgov.bosa.shaclvalidator.helper.QB;
 
@@ -35,50 +38,133 @@ import java.io.InputStream;
 import java.io.Writer;
 import java.net.URL;
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+
 import org.eclipse.rdf4j.model.BNode;
 
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Model;
 import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.util.Values;
 import org.eclipse.rdf4j.model.vocabulary.DCTERMS;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.SHACL;
 import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.RDFWriter;
 import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Validation report in RDF/Turtle
+ * Validation report in RDF/Turtle.
+ * 
+ * The validation results are written from the report index, grouped by shape and constraint component,
+ * instead of copying the report model.
  * 
  * @author Bart Hanssens
  */
 public class TurtleReport implements Report {
 	private final static Logger LOG = LoggerFactory.getLogger(TurtleReport.class);
 
-	private Model model = new LinkedHashModel();
+	private final static ValueFactory F = SimpleValueFactory.getInstance();
+
+	private final Model model = new LinkedHashModel();
+	private ReportIndex index;
+	private Resource report;
+
+	/**
+	 * Pass a statement to an RDF handler
+	 * 
+	 * @param h RDF handler
+	 * @param subj subject
+	 * @param pred predicate
+	 * @param obj object
+	 */
+	protected static void add(RDFHandler h, Resource subj, IRI pred, Value obj) {
+		h.handleStatement(F.createStatement(subj, pred, obj));
+	}
+
+	/**
+	 * Pass the description of a subject to an RDF handler, 
+	 * followed by the descriptions of the blank nodes it refers to
+	 * 
+	 * @param h RDF handler
+	 * @param index report index
+	 * @param subject subject
+	 * @param written subjects already passed to the handler
+	 */
+	private static void addDescription(RDFHandler h, ReportIndex index, Resource subject, Set<Resource> written) {
+		if (!written.add(subject)) {
+			return;
+		}
+		List<Statement> description = index.getDescription(subject);
+		for (Statement st: description) {
+			h.handleStatement(st);
+		}
+		for (Statement st: description) {
+			if (st.getObject().isBNode() && !st.getPredicate().equals(SHACL.RESULT)) {
+				addDescription(h, index, (Resource) st.getObject(), written);
+			}
+		}
+	}
+
+	/**
+	 * Pass the validation report to an RDF handler, with the results grouped by shape and constraint component
+	 * and followed by the shapes.
+	 * 
+	 * @param h RDF handler
+	 * @param index report index
+	 */
+	protected static void addReport(RDFHandler h, ReportIndex index) {
+		Set<Resource> written = new HashSet<>();
+		if (index.getReport() != null) {
+			addDescription(h, index, index.getReport(), written);
+		}
+		for (ReportIndex.Group group: index.getGroups()) {
+			for (ReportIndex.Result r: index.getResults(group)) {
+				addDescription(h, index, r.id(), written);
+			}
+		}
+		for (Resource shape: index.getShapes()) {
+			addDescription(h, index, shape, written);
+		}
+		// anything not linked to the report, results or shapes
+		for (Statement st: index.getModel()) {
+			if (!written.contains(st.getSubject())) {
+				h.handleStatement(st);
+			}
+		}
+	}
 
 	/**
 	 * Add (DataCube) observations.
 	 * Used for reporting the number of classes and properties.
 	 * 
-	 * @param m RDF model
+	 * @param h RDF handler
 	 * @param dataset name of the DataCube dataset
 	 * @param counted list of counted items
 	 */
-	private void addObservations(Model m, String dataset, List<CountedThing> counted) {
+	private static void addObservations(RDFHandler h, String dataset, List<CountedThing> counted) {
 		BNode node = Values.bnode(dataset);
 		for (CountedThing c: counted) {
 			BNode observation = Values.bnode();
-			m.add(observation, RDF.TYPE, QB.OBSERVATION);
-			m.add(observation, QB.DATASET_PROP, node);
-			m.add(observation, DataGovStats.NAME, Values.iri(c.name()));
-			m.add(observation, DataGovStats.NUMBER, Values.literal(c.number()));
+			add(h, observation, RDF.TYPE, QB.OBSERVATION);
+			add(h, observation, QB.DATASET_PROP, node);
+			add(h, observation, DataGovStats.NAME, Values.iri(c.name()));
+			add(h, observation, DataGovStats.NUMBER, Values.literal(c.number()));
 		}
 	}
 	
@@ -86,59 +172,187 @@ public class TurtleReport implements Report {
 	 * Add (DataCube) observations.
 	 * Used for reporting the number of property values.
 	 * 
-	 * @param m RDF model
+	 * @param h RDF handler
 	 * @param dataset name of the DataCube dataset
 	 * @param counted map with list of counted items
 	 */
-	private void addObservations(Model m, String dataset, Map<String, List<CountedThing>> counted) {
+	private static void addObservations(RDFHandler h, String dataset, Map<String, List<CountedThing>> counted) {
 		BNode node = Values.bnode(dataset);
 		for (String property: counted.keySet()) {
 			IRI name = Values.iri(property);
 			for (CountedThing c: counted.get(property)) {
 				BNode observation = Values.bnode();
-				m.add(observation, RDF.TYPE, QB.OBSERVATION);
-				m.add(observation, QB.DATASET_PROP, node);
-				m.add(observation, DataGovStats.NAME, name);
-				m.add(observation, DataGovStats.VALUE, Util.toValue(c.name()));
-				m.add(observation, DataGovStats.NUMBER, Values.literal(c.number()));
+				add(h, observation, RDF.TYPE, QB.OBSERVATION);
+				add(h, observation, QB.DATASET_PROP, node);
+				add(h, observation, DataGovStats.NAME, name);
+				add(h, observation, DataGovStats.VALUE, Util.toValue(c.name()));
+				add(h, observation, DataGovStats.NUMBER, Values.literal(c.number()));
 			}
 		}
 	}
 
-	@Override
-	public void reportValidation(Model issues, URL data, URL[] shacls) {
-		model.addAll(issues);
+	/**
+	 * Add (DataCube) observations.
+	 * Used for reporting the number of instances of a class using a property.
+	 * 
+	 * @param h RDF handler
+	 * @param dataset name of the DataCube dataset
+	 * @param coverage list of classes with the number of instances per property
+	 */
+	private static void addCoverage(RDFHandler h, String dataset, List<Coverage> coverage) {
+		BNode node = Values.bnode(dataset);
+		for (Coverage c: coverage) {
+			IRI name = Values.iri(c.name());
+			for (CountedThing p: c.properties()) {
+				BNode observation = Values.bnode();
+				add(h, observation, RDF.TYPE, QB.OBSERVATION);
+				add(h, observation, QB.DATASET_PROP, node);
+				add(h, observation, DataGovStats.NAME, name);
+				add(h, observation, DataGovStats.VALUE, Values.iri(p.name()));
+				add(h, observation, DataGovStats.NUMBER, Values.literal(p.number()));
+			}
+		}
+	}
+
+	/**
+	 * Add the parameters of the approximation as attributes of a (DataCube) dataset
+	 * 
+	 * @param h RDF handler
+	 * @param dataset name of the DataCube dataset
+	 * @param approximation parameters
+	 */
+	private static void addApproximation(RDFHandler h, String dataset, Approximation approximation) {
+		BNode node = Values.bnode(dataset);
+		add(h, node, DataGovStats.DISTINCT_ERROR, Values.literal(approximation.distinctError()));
+		add(h, node, DataGovStats.TOP_K, Values.literal(approximation.topK()));
+		add(h, node, DataGovStats.FREQUENCY_ERROR, Values.literal(approximation.frequencyError()));
+	}
 
-		Resource id = model.filter(null, RDF.TYPE, SHACL.VALIDATION_REPORT).subjects().stream().findFirst().get();
-		model.add(id, DCTERMS.ISSUED, Values.literal(LocalDateTime.now()));
-		model.add(id, DCTERMS.SOURCE, Values.literal(data.toString()));
+	/**
+	 * Add metadata about the validation to the report
+	 * 
+	 * @param h RDF handler
+	 * @param id ID of the validation report
+	 * @param data location of the data
+	 * @param shacls location(s) of the SHACL rules
+	 */
+	protected static void addMetadata(RDFHandler h, Resource id, URL data, URL[] shacls) {
+		add(h, id, DCTERMS.ISSUED, Values.literal(LocalDateTime.now()));
+		add(h, id, DCTERMS.SOURCE, Values.literal(data.toString()));
 		for (URL shacl: shacls) {
-			model.add(id, DCTERMS.CONFORMS_TO, Values.literal(shacl.toString()));
+			add(h, id, DCTERMS.CONFORMS_TO, Values.literal(shacl.toString()));
 		}
 	}
 
-	@Override
-	public void reportStatistics(Map<String, Object> stats) {
-		try(InputStream is = getClass().getClassLoader().getResourceAsStream("qb.ttl")) {
-			Model m = Rio.parse(is, RDFFormat.TURTLE);
-			model.addAll(m);
+	/**
+	 * Add the DataCube structure and the statistics
+	 * 
+	 * @param h RDF handler
+	 * @param stats statistics
+	 */
+	protected static void addStatistics(RDFHandler h, Map<String, Object> stats) {
+		try(InputStream is = TurtleReport.class.getClassLoader().getResourceAsStream("qb.ttl")) {
+			RDFParser parser = Rio.createParser(RDFFormat.TURTLE);
+			parser.setRDFHandler(new AbstractRDFHandler() {
+				@Override
+				public void handleStatement(Statement st) {
+					h.handleStatement(st);
+				}
+			});
+			parser.parse(is);
 		} catch (IOException ioe) {
 			//
 		}
 		if (stats.containsKey("classes")) {
-			addObservations(model, "classesDataset", (List<CountedThing>) stats.get("classes"));
+			addObservations(h, "classesDataset", (List<CountedThing>) stats.get("classes"));
 		}
 		if (stats.containsKey("properties")) {
-			addObservations(model, "propertiesDataset", (List<CountedThing>) stats.get("properties"));
+			addObservations(h, "propertiesDataset", (List<CountedThing>) stats.get("properties"));
 		}
 		if (stats.containsKey("values")){
-			addObservations(model, "valuesDataset", (Map<String, List<CountedThing>>) stats.get("values"));
-		}	
+			addObservations(h, "valuesDataset", (Map<String, List<CountedThing>>) stats.get("values"));
+		}
+		if (stats.containsKey("coverage")) {
+			addCoverage(h, "coverageDataset", (List<Coverage>) stats.get("coverage"));
+		}
+		if (stats.containsKey("distinct")) {
+			addObservations(h, "distinctValuesDataset", (List<CountedThing>) stats.get("distinct"));
+		}
+		if (stats.containsKey("approximation")) {
+			Approximation approximation = (Approximation) stats.get("approximation");
+			addApproximation(h, "valuesDataset", approximation);
+			addApproximation(h, "distinctValuesDataset", approximation);
+		}
+	}
+
+	/**
+	 * Add the shapes that were skipped to the report
+	 * 
+	 * @param h RDF handler
+	 * @param id ID of the validation report
+	 * @param shapes description of the skipped shapes
+	 */
+	protected static void addSkippedShapes(RDFHandler h, Resource id, List<String> shapes) {
+		for (String shape: shapes) {
+			add(h, id, DataGovStats.SKIPPED_SHAPE, Values.literal(shape));
+		}
+	}
+
+	/**
+	 * Add (DataCube) observations for the timing and resource usage of the phases of the run
+	 * 
+	 * @param h RDF handler
+	 * @param phases phases
+	 */
+	protected static void addMetrics(RDFHandler h, List<PhaseMetric> phases) {
+		BNode node = Values.bnode("metricsDataset");
+		for (PhaseMetric m: phases) {
+			BNode observation = Values.bnode();
+			add(h, observation, RDF.TYPE, QB.OBSERVATION);
+			add(h, observation, QB.DATASET_PROP, node);
+			add(h, observation, DataGovStats.PHASE, Values.literal(m.name()));
+			add(h, observation, DataGovStats.WALL_TIME, Values.literal(m.wallMillis()));
+			add(h, observation, DataGovStats.CPU_TIME, Values.literal(m.cpuMillis()));
+			add(h, observation, DataGovStats.TRIPLES, Values.literal(m.triples()));
+			add(h, observation, DataGovStats.THROUGHPUT, Values.literal(m.triplesPerSecond()));
+			add(h, observation, DataGovStats.PEAK_HEAP, Values.literal(m.peakHeap()));
+			add(h, observation, DataGovStats.ALLOCATED, Values.literal(m.allocated()));
+		}
+	}
+
+	@Override
+	public void reportValidation(ReportIndex index, URL data, URL[] shacls) {
+		this.index = index;
+		report = index.getReport();
+		addMetadata(new StatementCollector(model), index.getReport(), data, shacls);
+	}
+
+	@Override
+	public void reportStatistics(Map<String, Object> stats) {
+		addStatistics(new StatementCollector(model), stats);
+	}
+
+	@Override
+	public void reportSkippedShapes(List<String> shapes) {
+		addSkippedShapes(new StatementCollector(model), report, shapes);
+	}
+
+	@Override
+	public void reportMetrics(List<PhaseMetric> phases) {
+		addMetrics(new StatementCollector(model), phases);
 	}
 
 	@Override
 	public void write(Writer writer) throws IOException {
-		Rio.write(model, writer, RDFFormat.TURTLE);
+		RDFWriter w = Rio.createWriter(RDFFormat.TURTLE, writer);
+		w.startRDF();
+		if (index != null) {
+			addReport(w, index);
+		}
+		for (Statement st: model) {
+			w.handleStatement(st);
+		}
+		w.endRDF();
 	}
 
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.shapes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+
+/**
+ * Remove identical (blank node) property shapes from a shape.
+ * 
+ * When the same shapes are merged from several SHACL files, e.g. DCAT-AP and an extension repeating its rules,
+ * the property shapes are parsed into different blank nodes and every issue would be reported twice.
+ * 
+ * @author Bart Hanssens
+ */
+public class DeduplicateProperties implements NormalizationPass {
+	public final static String NAME = "dedup";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * Get a signature of a blank node, based on its properties and (recursively) those of nested blank nodes
+	 * 
+	 * @param shapes shapes graph
+	 * @param node blank node
+	 * @param signatures signatures calculated so far
+	 * @param visiting blank nodes being visited, to detect cycles
+	 * @return signature
+	 */
+	private static String signature(Model shapes, BNode node, Map<BNode,String> signatures, Set<BNode> visiting) {
+		String sig = signatures.get(node);
+		if (sig != null) {
+			return sig;
+		}
+		if (!visiting.add(node)) {
+			return "_:" + node.getID();
+		}
+
+		List<String> parts = new ArrayList<>();
+		for (Statement st: shapes.getStatements(node, null, null)) {
+			Value obj = st.getObject();
+			String val = obj.isBNode() 
+				? "[" + signature(shapes, (BNode) obj, signatures, visiting) + "]" 
+				: obj.toString();
+			parts.add(st.getPredicate().stringValue() + " " + val);
+		}
+		parts.sort(null);
+		sig = String.join(";", parts);
+
+		visiting.remove(node);
+		signatures.put(node, sig);
+		return sig;
+	}
+
+	/**
+	 * Remove a blank node and the nested blank nodes that are not used elsewhere
+	 * 
+	 * @param shapes shapes graph
+	 * @param node blank node
+	 */
+	private static void removeTree(Model shapes, BNode node) {
+		List<BNode> todo = new ArrayList<>();
+		todo.add(node);
+
+		while (!todo.isEmpty()) {
+			BNode n = todo.removeLast();
+			List<Statement> sts = new ArrayList<>(shapes.filter(n, null, null));
+			shapes.remove(n, null, null);
+			for (Statement st: sts) {
+				if (st.getObject().isBNode() && !shapes.contains(null, null, st.getObject())) {
+					todo.add((BNode) st.getObject());
+				}
+			}
+		}
+	}
+
+	@Override
+	public void apply(Model shapes) {
+		Map<BNode,String> signatures = new HashMap<>();
+		Set<BNode> visiting = new HashSet<>();
+		Map<Resource, Set<String>> seen = new HashMap<>();
+		List<Statement> duplicates = new ArrayList<>();
+
+		for (Statement st: shapes.getStatements(null, SHACL.PROPERTY, null)) {
+			if (!st.getObject().isBNode()) {
+				continue;
+			}
+			String sig = signature(shapes, (BNode) st.getObject(), signatures, visiting);
+			if (!seen.computeIfAbsent(st.getSubject(), k -> new HashSet<>()).add(sig)) {
+				duplicates.add(st);
+			}
+		}
+
+		for (Statement st: duplicates) {
+			shapes.remove(st);
+			BNode node = (BNode) st.getObject();
+			if (!shapes.contains(null, null, node)) {
+				removeTree(shapes, node);
+			}
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.shapes;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+
+/**
+ * Remove empty shacl:property on shacl:NodeShape, arguably a bug.
+ * NodeShapes that don't contain shacl:property anymore are removed as well.
+ * 
+ * Used by EU DCAT-AP SHACL shapes
+ * 
+ * @author Bart Hanssens
+ */
+public class FixEmptyProperties implements NormalizationPass {
+	public final static String NAME = "emptyProperties";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public void apply(Model shapes) {
+		// remove empty property shapes values, i.e. remove if they use a resource which points to nothing
+		List<Statement> blanks = new ArrayList<>();
+		Set<Resource> emptied = new HashSet<>();
+
+		for (Statement st: shapes.getStatements(null, SHACL.PROPERTY, null)) {
+			Value obj = st.getObject();
+			if (obj.isResource() && !shapes.contains((Resource) obj, null, null)) {
+				blanks.add(st);
+				emptied.add(st.getSubject());
+			}
+		}
+		shapes.removeAll(blanks);
+
+		// now remove shacl:NodeShape that don't contain shacl:property anymore
+		for (Resource shape: emptied) {
+			if (shapes.contains(shape, RDF.TYPE, SHACL.NODE_SHAPE) && !shapes.contains(shape, SHACL.PROPERTY, null)) {
+				shapes.remove(shape, null, null);
+			}
+		}
+	}
+}
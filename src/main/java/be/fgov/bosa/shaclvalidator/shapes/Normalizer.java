@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.shapes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.eclipse.rdf4j.model.Model;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pipeline of normalization passes, applied to an in-memory copy of the shapes graph
+ * 
+ * @author Bart Hanssens
+ */
+public class Normalizer {
+	private final static Logger LOG = LoggerFactory.getLogger(Normalizer.class);
+
+	// fixes for the EU DCAT-AP shapes
+	public final static String DEFAULT = FixNamesOnNode.NAME + "," + FixEmptyProperties.NAME;
+
+	private final static Map<String, Supplier<NormalizationPass>> PASSES = Map.of(
+		FixNamesOnNode.NAME, FixNamesOnNode::new,
+		FixEmptyProperties.NAME, FixEmptyProperties::new,
+		DeduplicateProperties.NAME, DeduplicateProperties::new
+	);
+
+	private final List<NormalizationPass> passes;
+
+	/**
+	 * Get the names of the available passes
+	 * 
+	 * @return sorted list of names
+	 */
+	public static List<String> available() {
+		return PASSES.keySet().stream().sorted().collect(Collectors.toList());
+	}
+
+	/**
+	 * Create a pipeline from a list of pass names
+	 * 
+	 * @param names names of the passes, in order
+	 * @return pipeline
+	 * @throws IllegalArgumentException when a pass is unknown
+	 */
+	public static Normalizer create(String[] names) {
+		List<NormalizationPass> list = new ArrayList<>();
+		if (names != null) {
+			for (String name: names) {
+				if (name.isBlank()) {
+					continue;
+				}
+				Supplier<NormalizationPass> pass = PASSES.get(name.strip());
+				if (pass == null) {
+					throw new IllegalArgumentException("Unknown normalization pass " + name + ", available: " 
+															+ String.join(",", available()));
+				}
+				list.add(pass.get());
+			}
+		}
+		return new Normalizer(list);
+	}
+
+	/**
+	 * Create the default pipeline
+	 * 
+	 * @return pipeline
+	 */
+	public static Normalizer create() {
+		return create(DEFAULT.split(","));
+	}
+
+	/**
+	 * Get the names of the passes, used as part of the key of the shapes cache
+	 * 
+	 * @return comma-separated names
+	 */
+	public String getName() {
+		return passes.stream().map(NormalizationPass::getName).collect(Collectors.joining(","));
+	}
+
+	/**
+	 * Apply all passes, in order
+	 * 
+	 * @param shapes shapes graph
+	 */
+	public void apply(Model shapes) {
+		for (NormalizationPass pass: passes) {
+			int before = shapes.size();
+			long start = System.nanoTime();
+			pass.apply(shapes);
+			LOG.info("Normalization {}: {} ms, {} -> {} statements", pass.getName(), 
+				(System.nanoTime() - start) / 1_000_000, before, shapes.size());
+		}
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param passes passes, in order
+	 */
+	public Normalizer(List<NormalizationPass> passes) {
+		this.passes = List.copyOf(passes);
+	}
+}
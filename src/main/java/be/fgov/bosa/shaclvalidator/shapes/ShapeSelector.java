@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.shapes;
+
+import be.fgov.bosa.shaclvalidator.helper.Util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Select the shapes to validate, by IRI of the shape, target class or severity.
+ *
+ * The selection only applies to the shapes with a target, and their property shapes.
+ * Property shapes that are not selected are removed from their node shape, and node shapes without any selected
+ * constraints are removed, together with everything that was only reachable from them (e.g. blank nodes,
+ * shapes only used via sh:node), so the SHACL Sail does not spend any time on them.
+ * Shapes that are still used by the remaining shapes (e.g. via sh:node, sh:and or sh:qualifiedValueShape)
+ * are kept as they are, so the selected shapes are validated completely.
+ *
+ * @author Bart Hanssens
+ */
+public class ShapeSelector {
+	private final static Logger LOG = LoggerFactory.getLogger(ShapeSelector.class);
+
+	public final static String CLASS = "class:";
+	public final static String SEVERITY = "severity:";
+
+	private final static Set<IRI> TARGETS = Set.of(SHACL.TARGET_CLASS, SHACL.TARGET_NODE,
+		SHACL.TARGET_SUBJECTS_OF, SHACL.TARGET_OBJECTS_OF, SHACL.TARGET_PROP);
+
+	// predicates of a node shape that are not constraints
+	private final static Set<IRI> STRUCTURE = Set.of(RDF.TYPE, SHACL.PROPERTY, SHACL.DEACTIVATED,
+		SHACL.SEVERITY_PROP, SHACL.MESSAGE, SHACL.NAME, SHACL.DESCRIPTION, SHACL.TARGET_CLASS, SHACL.TARGET_NODE,
+		SHACL.TARGET_SUBJECTS_OF, SHACL.TARGET_OBJECTS_OF, SHACL.TARGET_PROP);
+
+	/**
+	 * Selection of a shape by IRI, target class or severity: only one of them is set
+	 */
+	private record Selection(IRI shape, IRI targetClass, IRI severity) { }
+
+	private final List<Selection> includes;
+	private final List<Selection> excludes;
+
+	/**
+	 * Parse a selection: an IRI (or prefixed name) of a shape, class:IRI or severity:violation|warning|info
+	 *
+	 * @param str string
+	 * @return selection
+	 * @throws IllegalArgumentException when the severity is unknown
+	 */
+	private static Selection parse(String str) {
+		String s = str.strip();
+		if (s.startsWith(CLASS)) {
+			return new Selection(null, Util.expandIRI(s.substring(CLASS.length())), null);
+		}
+		if (s.startsWith(SEVERITY)) {
+			IRI severity = switch(s.substring(SEVERITY.length()).toLowerCase()) {
+				case "violation" -> SHACL.VIOLATION;
+				case "warning" -> SHACL.WARNING;
+				case "info" -> SHACL.INFO;
+				default -> throw new IllegalArgumentException("Unknown severity in " + str
+																+ ", available: violation,warning,info");
+			};
+			return new Selection(null, null, severity);
+		}
+		return new Selection(Util.expandIRI(s), null, null);
+	}
+
+	/**
+	 * Parse a list of selections
+	 *
+	 * @param strs strings, or null
+	 * @return list of selections
+	 */
+	private static List<Selection> parse(String[] strs) {
+		List<Selection> list = new ArrayList<>();
+		if (strs != null) {
+			for (String str: strs) {
+				if (!str.isBlank()) {
+					list.add(parse(str));
+				}
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Check if a shape matches a selection
+	 *
+	 * @param shapes shapes graph
+	 * @param shape shape
+	 * @param sel selection
+	 * @return true if matching
+	 */
+	private static boolean matches(Model shapes, Resource shape, Selection sel) {
+		if (sel.shape() != null) {
+			return shape.equals(sel.shape());
+		}
+		if (sel.targetClass() != null) {
+			return shapes.contains(shape, SHACL.TARGET_CLASS, sel.targetClass())
+				|| (shape.equals(sel.targetClass()) && shapes.contains(shape, RDF.TYPE, RDFS.CLASS));
+		}
+		IRI severity = Models.getPropertyIRI(shapes, shape, SHACL.SEVERITY_PROP).orElse(SHACL.VIOLATION);
+		return severity.equals(sel.severity());
+	}
+
+	/**
+	 * Check if a shape matches any of the selections.
+	 * Property shapes also match the IRI and target class of their node shape, but not its severity.
+	 *
+	 * @param shapes shapes graph
+	 * @param shape shape
+	 * @param parent node shape of a property shape, or null
+	 * @param selections list of selections
+	 * @return true if matching
+	 */
+	private static boolean matchesAny(Model shapes, Resource shape, Resource parent, List<Selection> selections) {
+		for (Selection sel: selections) {
+			if (matches(shapes, shape, sel)
+					|| (parent != null && sel.severity() == null && matches(shapes, parent, sel))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the constraints of a shape are to be validated
+	 *
+	 * @param shapes shapes graph
+	 * @param shape shape
+	 * @param parent node shape of a property shape, or null
+	 * @return true if selected
+	 */
+	private boolean isSelected(Model shapes, Resource shape, Resource parent) {
+		return (includes.isEmpty() || matchesAny(shapes, shape, parent, includes))
+				&& !matchesAny(shapes, shape, parent, excludes);
+	}
+
+	/**
+	 * Get the shapes that are validated directly, i.e. with a target or an implicit class target
+	 *
+	 * @param shapes shapes graph
+	 * @return set of shapes
+	 */
+	private static Set<Resource> targeted(Model shapes) {
+		Set<Resource> roots = new HashSet<>();
+		for (IRI target: TARGETS) {
+			roots.addAll(shapes.filter(null, target, null).subjects());
+		}
+		for (Resource r: shapes.filter(null, RDF.TYPE, SHACL.NODE_SHAPE).subjects()) {
+			if (shapes.contains(r, RDF.TYPE, RDFS.CLASS)) {
+				roots.add(r);
+			}
+		}
+		return roots;
+	}
+
+	/**
+	 * Get all resources reachable from the roots
+	 *
+	 * @param shapes shapes graph
+	 * @param roots starting points
+	 * @return set of resources, including the roots
+	 */
+	private static Set<Resource> reachable(Model shapes, Set<Resource> roots) {
+		Set<Resource> visited = new HashSet<>();
+		Deque<Resource> todo = new ArrayDeque<>(roots);
+		while (!todo.isEmpty()) {
+			Resource r = todo.pop();
+			if (!visited.add(r)) {
+				continue;
+			}
+			for (Value v: shapes.filter(r, null, null).objects()) {
+				if (v.isResource() && !visited.contains(v)) {
+					todo.push((Resource) v);
+				}
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * Check if a resource is part of the shapes, i.e. a blank node or a resource using SHACL properties
+	 *
+	 * @param shapes shapes graph
+	 * @param r resource
+	 * @return true if part of the shapes
+	 */
+	private static boolean isShapePart(Model shapes, Resource r) {
+		if (r.isBNode()) {
+			return true;
+		}
+		for (Statement st: shapes.getStatements(r, null, null)) {
+			if (st.getPredicate().getNamespace().equals(SHACL.NAMESPACE)
+				|| SHACL.NODE_SHAPE.equals(st.getObject()) || SHACL.PROPERTY_SHAPE.equals(st.getObject())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Describe a shape, using the path for anonymous property shapes
+	 *
+	 * @param shapes shapes graph
+	 * @param shape shape
+	 * @param parent node shape of a property shape, or null
+	 * @return string
+	 */
+	private static String describe(Model shapes, Resource shape, Resource parent) {
+		if (shape.isIRI()) {
+			return Util.prefixedIRI((IRI) shape);
+		}
+		String path = Models.getPropertyIRI(shapes, shape, SHACL.PATH).map(Util::prefixedIRI).orElse("[]");
+		return (parent != null) ? describe(shapes, parent, null) + " " + path : path;
+	}
+
+	/**
+	 * Check if any shapes are to be skipped
+	 *
+	 * @return true if there are include or exclude selections
+	 */
+	public boolean isEnabled() {
+		return !includes.isEmpty() || !excludes.isEmpty();
+	}
+
+	/**
+	 * Get the resources used by other resources reachable from the shapes with a target
+	 *
+	 * @param shapes shapes graph
+	 * @return set of resources
+	 */
+	private static Set<Resource> used(Model shapes) {
+		Set<Resource> used = new HashSet<>();
+		for (Resource r: reachable(shapes, targeted(shapes))) {
+			for (Value v: shapes.filter(r, null, null).objects()) {
+				if (v.isResource() && !v.equals(r)) {
+					used.add((Resource) v);
+				}
+			}
+		}
+		return used;
+	}
+
+	/**
+	 * Remove the shapes that are not selected
+	 *
+	 * @param shapes shapes graph
+	 * @return description of the skipped shapes
+	 */
+	public List<String> apply(Model shapes) {
+		List<String> skipped = new ArrayList<>();
+		if (!isEnabled()) {
+			return skipped;
+		}
+		int size = shapes.size();
+
+		Set<Resource> roots = targeted(shapes);
+		Set<Resource> before = reachable(shapes, roots);
+
+		// statements to remove per shape with a target, and description of what is skipped
+		Map<Resource, List<Statement>> removals = new HashMap<>();
+		Map<Resource, List<String>> descriptions = new HashMap<>();
+
+		for (Resource node: roots) {
+			List<Statement> remove = new ArrayList<>();
+			List<String> descr = new ArrayList<>();
+			boolean remaining = false;
+			for (Statement st: shapes.getStatements(node, SHACL.PROPERTY, null)) {
+				if (st.getObject().isResource() && !isSelected(shapes, (Resource) st.getObject(), node)) {
+					descr.add(describe(shapes, (Resource) st.getObject(), node));
+					remove.add(st);
+				} else {
+					remaining = true;
+				}
+			}
+			if (!isSelected(shapes, node, null)) {
+				if (remaining) {
+					// keep the node shape for its property shapes, but not its own constraints
+					List<Statement> constraints = shapes.filter(node, null, null).stream()
+						.filter(st -> st.getPredicate().getNamespace().equals(SHACL.NAMESPACE))
+						.filter(st -> !STRUCTURE.contains(st.getPredicate()))
+						.toList();
+					if (!constraints.isEmpty()) {
+						descr.add(describe(shapes, node, null) + " (node constraints)");
+						remove.addAll(constraints);
+					}
+				} else {
+					descr.add(describe(shapes, node, null));
+					remove.clear();
+					shapes.getStatements(node, null, null).forEach(remove::add);
+				}
+			}
+			if (!remove.isEmpty()) {
+				removals.put(node, remove);
+				descriptions.put(node, descr);
+			}
+		}
+
+		// shapes used by the remaining shapes (e.g. via sh:node) must be kept completely
+		Set<Resource> used = new HashSet<>();
+		boolean changed = true;
+		while (changed) {
+			Model pruned = new LinkedHashModel(shapes);
+			removals.forEach((r, sts) -> {
+				if (!used.contains(r)) {
+					pruned.removeAll(sts);
+				}
+			});
+			changed = false;
+			for (Resource r: used(pruned)) {
+				if (removals.containsKey(r) && used.add(r)) {
+					changed = true;
+				}
+			}
+		}
+		for (Resource r: removals.keySet()) {
+			if (used.contains(r)) {
+				LOG.info("Keeping {}, used by other shapes", describe(shapes, r, null));
+			} else {
+				shapes.removeAll(removals.get(r));
+				skipped.addAll(descriptions.get(r));
+			}
+		}
+
+		// remove everything that was only reachable from the removed shapes
+		Set<Resource> after = reachable(shapes, targeted(shapes));
+		for (Resource r: before) {
+			if (!after.contains(r) && isShapePart(shapes, r)) {
+				shapes.remove(r, null, null);
+			}
+		}
+		LOG.info("Skipped {} shapes, {} -> {} statements", skipped.size(), size, shapes.size());
+		return skipped;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param includes shapes to include (IRI, class:IRI or severity:name), or null to include all shapes
+	 * @param excludes shapes to exclude (IRI, class:IRI or severity:name), or null
+	 * @throws IllegalArgumentException when a severity is unknown
+	 */
+	public ShapeSelector(String[] includes, String[] excludes) {
+		this.includes = parse(includes);
+		this.excludes = parse(excludes);
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.shard;
+
+import be.fgov.bosa.shaclvalidator.Validator;
+import be.fgov.bosa.shaclvalidator.cache.HttpCache;
+import be.fgov.bosa.shaclvalidator.helper.Decompressor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.RDFS;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.RDFWriter;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
+import org.eclipse.rdf4j.rio.helpers.RDFHandlerWrapper;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Partition RDF data by subject into N-Triples files, keeping blank nodes together with the nodes referring to them.
+ * 
+ * The first pass writes the data as N-Triples (so blank node IDs are stable) and groups subjects connected 
+ * by blank nodes. The second pass writes every statement to the shard of its group, and adds the rdf:type of
+ * nodes referred to by properties with sh:class constraints to the shards referring to them (reference closure).
+ * 
+ * The statements themselves are written to disk, but the groups and the types are kept in memory:
+ * the heap needed grows with the number of nodes connected by blank nodes,
+ * and with the number of instances of the classes used in sh:class constraints.
+ * 
+ * @author Bart Hanssens
+ */
+public class Partitioner {
+	private final static Logger LOG = LoggerFactory.getLogger(Partitioner.class);
+
+	private final int shards;
+	private final ShapesAnalysis analysis;
+	private final HttpCache cache;
+
+	// union-find of nodes connected by blank nodes, using the N-Triples representation of the nodes.
+	// Only nodes connected by blank nodes are added, other nodes are a group on their own.
+	private final Map<String,String> parent = new HashMap<>();
+	private final Map<Value, Set<Value>> subClasses = new HashMap<>();
+	private final List<String> hierarchy = new ArrayList<>();
+
+	/**
+	 * Find the group of a node
+	 * 
+	 * @param node N-Triples representation of the node
+	 * @return N-Triples representation of the group
+	 */
+	private String find(String node) {
+		String p = parent.get(node);
+		if (p == null) {
+			return node;
+		}
+		String root = node;
+		while (p != null) {
+			root = p;
+			p = parent.get(root);
+		}
+		// path compression
+		String n = node;
+		while (!n.equals(root)) {
+			String next = parent.get(n);
+			parent.put(n, root);
+			n = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Put two nodes in the same group
+	 * 
+	 * @param a N-Triples representation of a node
+	 * @param b N-Triples representation of another node
+	 */
+	private void union(String a, String b) {
+		String ra = find(a);
+		String rb = find(b);
+		if (!ra.equals(rb)) {
+			parent.put(ra, rb);
+		}
+	}
+
+	/**
+	 * Get the shard of a node
+	 * 
+	 * @param node N-Triples representation of the node
+	 * @return shard number
+	 */
+	private int shard(String node) {
+		return Math.floorMod(find(node).hashCode(), shards);
+	}
+
+	/**
+	 * Get the shard of a subject or focus node
+	 * 
+	 * @param node node
+	 * @return shard number
+	 */
+	public int shard(Value node) {
+		return shard(NTriplesUtil.toNTriplesString(node));
+	}
+
+	/**
+	 * Get the classes in sh:class constraints and their subclasses (as found in the data)
+	 * 
+	 * @return set of classes
+	 */
+	private Set<Value> classClosure() {
+		Set<Value> closure = new HashSet<>();
+		List<Value> todo = new ArrayList<>(analysis.getClasses());
+		while (!todo.isEmpty()) {
+			Value c = todo.removeLast();
+			if (closure.add(c)) {
+				todo.addAll(subClasses.getOrDefault(c, Set.of()));
+			}
+		}
+		return closure;
+	}
+
+	/**
+	 * First pass: write the data as N-Triples and group nodes connected by blank nodes
+	 * 
+	 * @param location location of the data, possibly compressed
+	 * @param fmt optional RDF format
+	 * @param listener RDF handler receiving every statement, or null
+	 * @param out N-Triples file
+	 * @throws IOException 
+	 */
+	private void group(URL location, Optional<String> fmt, RDFHandler listener, Path out) throws IOException {
+		try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(out))) {
+			RDFWriter writer = Rio.createWriter(RDFFormat.NTRIPLES, os);
+			RDFHandler handler = new AbstractRDFHandler() {
+				@Override
+				public void handleStatement(Statement st) {
+					writer.handleStatement(st);
+					if (st.getObject().isBNode()) {
+						union(NTriplesUtil.toNTriplesString(st.getSubject()), 
+								NTriplesUtil.toNTriplesString(st.getObject()));
+					}
+					if (st.getPredicate().equals(RDFS.SUBCLASSOF)) {
+						subClasses.computeIfAbsent(st.getObject(), k -> new HashSet<>()).add(st.getSubject());
+						hierarchy.add(line(st));
+					}
+				}
+			};
+			// a zip file may contain multiple files, written as one N-Triples file
+			writer.startRDF();
+			Decompressor.forEach(location, cache, (is, name) -> {
+				RDFParser parser = Rio.createParser(Validator.format(name, fmt));
+				parser.setRDFHandler(listener == null ? handler : new RDFHandlerWrapper(handler, listener));
+				parser.parse(is);
+			});
+			writer.endRDF();
+		}
+	}
+
+	/**
+	 * Get a statement as N-Triples line
+	 * 
+	 * @param st statement
+	 * @return string
+	 */
+	private static String line(Statement st) {
+		return line(st.getSubject(), st.getPredicate(), st.getObject());
+	}
+
+	/**
+	 * Get a triple as N-Triples line
+	 * 
+	 * @param subj subject
+	 * @param pred predicate
+	 * @param obj object
+	 * @return string
+	 */
+	private static String line(Value subj, Value pred, Value obj) {
+		return NTriplesUtil.toNTriplesString(subj) + " " + NTriplesUtil.toNTriplesString(pred) + " " 
+				+ NTriplesUtil.toNTriplesString(obj) + " .\n";
+	}
+
+	/**
+	 * Second pass: write the statements to the shards
+	 * 
+	 * @param in N-Triples file
+	 * @param files shard files
+	 * @throws IOException 
+	 */
+	private void partition(Path in, Path[] files) throws IOException {
+		Set<Value> closure = classClosure();
+		Map<Value, List<Value>> types = new HashMap<>();
+		List<Set<Value>> references = new ArrayList<>(shards);
+		Writer[] writers = new Writer[shards];
+
+		try {
+			for (int i = 0; i < shards; i++) {
+				writers[i] = Files.newBufferedWriter(files[i], StandardCharsets.UTF_8);
+				references.add(new HashSet<>());
+			}
+
+			RDFParser parser = Rio.createParser(RDFFormat.NTRIPLES);
+			parser.getParserConfig().set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+			parser.setRDFHandler(new AbstractRDFHandler() {
+				@Override
+				public void handleStatement(Statement st) {
+					String subj = NTriplesUtil.toNTriplesString(st.getSubject());
+					int shard = shard(subj);
+					try {
+						writers[shard].write(line(st));
+					} catch (IOException ioe) {
+						throw new RDFHandlerException(ioe);
+					}
+					Value obj = st.getObject();
+					if (st.getPredicate().equals(RDF.TYPE) && closure.contains(obj)) {
+						types.computeIfAbsent(st.getSubject(), k -> new ArrayList<>()).add(obj);
+					}
+					if (obj.isIRI() && analysis.getClassPaths().contains(st.getPredicate()) 
+							&& shard(NTriplesUtil.toNTriplesString(obj)) != shard) {
+						references.get(shard).add(obj);
+					}
+				}
+			});
+			try (InputStream is = new BufferedInputStream(Files.newInputStream(in))) {
+				parser.parse(is);
+			}
+
+			// reference closure: class hierarchy and types of the nodes referred to
+			long added = 0;
+			for (int i = 0; i < shards; i++) {
+				for (String h: hierarchy) {
+					writers[i].write(h);
+				}
+				for (Value ref: references.get(i)) {
+					for (Value type: types.getOrDefault(ref, List.of())) {
+						writers[i].write(line(ref, RDF.TYPE, type));
+						added++;
+					}
+				}
+			}
+			LOG.info("Added {} rdf:type statements to shards", added);
+		} finally {
+			for (Writer w: writers) {
+				if (w != null) {
+					w.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Partition the data into N-Triples files
+	 * 
+	 * @param location location of the data, possibly compressed
+	 * @param fmt optional RDF format
+	 * @param listener RDF handler receiving every statement, or null
+	 * @param dir directory for the shards
+	 * @return shard files
+	 * @throws IOException 
+	 */
+	public Path[] partition(URL location, Optional<String> fmt, RDFHandler listener, Path dir) throws IOException {
+		Path all = dir.resolve("data.nt");
+		group(location, fmt, listener, all);
+		LOG.info("Grouped {} blank node references", parent.size());
+
+		Path[] files = new Path[shards];
+		for (int i = 0; i < shards; i++) {
+			files[i] = dir.resolve("shard-" + i + ".nt");
+		}
+		partition(all, files);
+		Files.delete(all);
+		return files;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param shards number of shards
+	 * @param analysis analysis of the shapes
+	 * @param cache HTTP download cache or null
+	 */
+	public Partitioner(int shards, ShapesAnalysis analysis, HttpCache cache) {
+		this.shards = shards;
+		this.analysis = analysis;
+		this.cache = cache;
+	}
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.shard;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.SHACL;
+
+/**
+ * Analysis of the shapes, to decide whether the data can be validated in shards.
+ * 
+ * Data is partitioned by subject, so constraints must only look at the statements of the focus node 
+ * (and its blank nodes). The exception is sh:class, which only needs the rdf:type of the value nodes:
+ * these are added to each shard as a "reference closure".
+ * 
+ * @author Bart Hanssens
+ */
+public class ShapesAnalysis {
+	// constraints and targets looking at other nodes than the focus node
+	private final static List<IRI> NON_LOCAL = List.of(SHACL.NODE, SHACL.QUALIFIED_VALUE_SHAPE, SHACL.SPARQL,
+														SHACL.TARGET_OBJECTS_OF, SHACL.TARGET_PROP);
+
+	private final String reason;
+	private final Set<IRI> classes = new HashSet<>();
+	private final Set<IRI> classPaths = new HashSet<>();
+
+	/**
+	 * Check if a (property) shape contains other property shapes, or sh:class constraints, 
+	 * either directly or in logical constraints (sh:or, sh:and...)
+	 * 
+	 * @param shapes shapes graph
+	 * @param shape property shape
+	 * @param classPath set to true when a sh:class constraint is found
+	 * @return true when a nested property shape was found
+	 */
+	private static boolean nested(Model shapes, Resource shape, boolean[] classPath) {
+		Set<Resource> visited = new HashSet<>();
+		Deque<Resource> todo = new ArrayDeque<>();
+		todo.push(shape);
+
+		while (!todo.isEmpty()) {
+			Resource r = todo.pop();
+			if (!visited.add(r)) {
+				continue;
+			}
+			for (Statement st: shapes.getStatements(r, null, null)) {
+				IRI pred = st.getPredicate();
+				if (!r.equals(shape) && (pred.equals(SHACL.PATH) || pred.equals(SHACL.PROPERTY))) {
+					return true;
+				}
+				if (pred.equals(SHACL.CLASS)) {
+					classPath[0] = true;
+				}
+				if (st.getObject().isBNode()) {
+					todo.push((Resource) st.getObject());
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Analyze the shapes
+	 * 
+	 * @param shapes shapes graph
+	 * @return reason why sharding is not possible, or null
+	 */
+	private String analyze(Model shapes) {
+		for (IRI pred: NON_LOCAL) {
+			if (shapes.contains(null, pred, null)) {
+				return "shapes use " + pred.getLocalName();
+			}
+		}
+		for (Statement st: shapes.getStatements(null, SHACL.CLASS, null)) {
+			if (st.getObject().isIRI()) {
+				classes.add((IRI) st.getObject());
+			}
+		}
+		for (Statement st: shapes.getStatements(null, SHACL.PATH, null)) {
+			Value path = st.getObject();
+			if (!path.isIRI()) {
+				// inverse, sequence, alternative or other complex paths
+				return "shapes use complex paths";
+			}
+			boolean[] classPath = { false };
+			if (nested(shapes, st.getSubject(), classPath)) {
+				return "shapes use nested property shapes";
+			}
+			if (classPath[0]) {
+				classPaths.add((IRI) path);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Check if the data can be validated in shards
+	 * 
+	 * @return boolean
+	 */
+	public boolean isShardable() {
+		return reason == null;
+	}
+
+	/**
+	 * Get the reason why the data can't be validated in shards
+	 * 
+	 * @return reason or null
+	 */
+	public String getReason() {
+		return reason;
+	}
+
+	/**
+	 * Get the classes used in sh:class constraints
+	 * 
+	 * @return set of classes
+	 */
+	public Set<IRI> getClasses() {
+		return classes;
+	}
+
+	/**
+	 * Get the paths of property shapes with sh:class constraints
+	 * 
+	 * @return set of properties
+	 */
+	public Set<IRI> getClassPaths() {
+		return classPaths;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param shapes shapes graph
+	 */
+	public ShapesAnalysis(Model shapes) {
+		this.reason = analyze(shapes);
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.sketch;
+
+/**
+ * HyperLogLog estimator of the number of distinct values, using a fixed amount of memory.
+ * 
+ * The relative standard error is about 1.04 / sqrt(m), with m = 2^precision registers of one byte each.
+ * 
+ * @author Bart Hanssens
+ */
+public class HyperLogLog {
+	public final static int MIN_PRECISION = 4;
+	public final static int MAX_PRECISION = 18;
+
+	private final int precision;
+	private final byte[] registers;
+
+	/**
+	 * Get the number of precision bits needed for a relative standard error
+	 * 
+	 * @param error relative standard error, e.g. 0.01 for 1%
+	 * @return precision bits
+	 */
+	public static int precision(double error) {
+		int p = (int) Math.ceil(Math.log(Math.pow(1.04 / error, 2)) / Math.log(2));
+		return Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, p));
+	}
+
+	/**
+	 * Hash a string into 64 bits (FNV-1a, followed by the MurmurHash3 finalizer to spread the bits)
+	 * 
+	 * @param str string
+	 * @return hash
+	 */
+	public static long hash(String str) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < str.length(); i++) {
+			h ^= str.charAt(i);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Add a value
+	 * 
+	 * @param value string value
+	 */
+	public void add(String value) {
+		long h = hash(value);
+		int idx = (int) (h >>> (64 - precision));
+		// rank of the first 1-bit in the remaining bits, with a sentinel to limit the rank
+		long w = (h << precision) | (1L << (precision - 1));
+		byte rank = (byte) (Long.numberOfLeadingZeros(w) + 1);
+		if (rank > registers[idx]) {
+			registers[idx] = rank;
+		}
+	}
+
+	/**
+	 * Estimate the number of distinct values added so far
+	 * 
+	 * @return estimated number of distinct values
+	 */
+	public long estimate() {
+		int m = registers.length;
+		double sum = 0;
+		int zeros = 0;
+		for (byte r: registers) {
+			sum += 1.0 / (1L << r);
+			if (r == 0) {
+				zeros++;
+			}
+		}
+		double alpha = switch (m) {
+			case 16 -> 0.673;
+			case 32 -> 0.697;
+			case 64 -> 0.709;
+			default -> 0.7213 / (1 + 1.079 / m);
+		};
+		double estimate = alpha * m * m / sum;
+		// linear counting for small cardinalities
+		if (estimate <= 2.5 * m && zeros > 0) {
+			estimate = m * Math.log((double) m / zeros);
+		}
+		return Math.round(estimate);
+	}
+
+	/**
+	 * Get the relative standard error of the estimate
+	 * 
+	 * @return relative standard error
+	 */
+	public double getError() {
+		return 1.04 / Math.sqrt(registers.length);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param precision number of bits used for selecting a register (4 to 18)
+	 */
+	public HyperLogLog(int precision) {
+		if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+			throw new IllegalArgumentException("Precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+		}
+		this.precision = precision;
+		this.registers = new byte[1 << precision];
+	}
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.sketch;
+
+import be.fgov.bosa.shaclvalidator.dao.CountedThing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving sketch of the most frequent values, using a fixed number of counters.
+ * 
+ * Every value with a frequency above N / capacity is guaranteed to be kept, N being the number of values added.
+ * Counts are never underestimated, and overestimated by at most N / capacity.
+ * The counters are kept in a min-heap, so replacing the least frequent value takes O(log capacity).
+ * 
+ * @author Bart Hanssens
+ */
+public class SpaceSaving {
+	private final int capacity;
+	private final String[] keys;
+	private final long[] counts;
+	private final Map<String, Integer> positions;
+	private int size = 0;
+	private long total = 0;
+
+	/**
+	 * Swap two counters in the heap
+	 * 
+	 * @param i position
+	 * @param j position
+	 */
+	private void swap(int i, int j) {
+		String k = keys[i];
+		keys[i] = keys[j];
+		keys[j] = k;
+		long c = counts[i];
+		counts[i] = counts[j];
+		counts[j] = c;
+		positions.put(keys[i], i);
+		positions.put(keys[j], j);
+	}
+
+	/**
+	 * Move a counter down the heap after its count was increased
+	 * 
+	 * @param i position
+	 */
+	private void siftDown(int i) {
+		while (true) {
+			int left = 2 * i + 1;
+			int right = left + 1;
+			int smallest = i;
+			if (left < size && counts[left] < counts[smallest]) {
+				smallest = left;
+			}
+			if (right < size && counts[right] < counts[smallest]) {
+				smallest = right;
+			}
+			if (smallest == i) {
+				return;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	/**
+	 * Move a newly added counter up the heap
+	 * 
+	 * @param i position
+	 */
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (counts[parent] <= counts[i]) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/**
+	 * Add a value
+	 * 
+	 * @param value string value
+	 */
+	public void add(String value) {
+		total++;
+		Integer pos = positions.get(value);
+		if (pos != null) {
+			counts[pos]++;
+			siftDown(pos);
+			return;
+		}
+		if (size < capacity) {
+			keys[size] = value;
+			counts[size] = 1;
+			positions.put(value, size);
+			siftUp(size++);
+			return;
+		}
+		// replace the least frequent value, which inherits its count
+		positions.remove(keys[0]);
+		keys[0] = value;
+		counts[0]++;
+		positions.put(value, 0);
+		siftDown(0);
+	}
+
+	/**
+	 * Get the number of values added so far
+	 * 
+	 * @return number of values
+	 */
+	public long getTotal() {
+		return total;
+	}
+
+	/**
+	 * Get the maximum overestimation of the counts
+	 * 
+	 * @return maximum error
+	 */
+	public long getMaxError() {
+		return (size < capacity) ? 0 : counts[0];
+	}
+
+	/**
+	 * Get the most frequent values with their (estimated) count
+	 * 
+	 * @param k number of values
+	 * @return list of at most k values, most frequent first
+	 */
+	public List<CountedThing> top(int k) {
+		List<CountedThing> list = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(new CountedThing(keys[i], counts[i]));
+		}
+		list.sort(null);
+		return (list.size() > k) ? list.subList(0, k) : list;
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param capacity number of counters
+	 */
+	public SpaceSaving(int capacity) {
+		this.capacity = capacity;
+		this.keys = new String[capacity];
+		this.counts = new long[capacity];
+		this.positions = new HashMap<>(capacity * 2);
+	}
+}
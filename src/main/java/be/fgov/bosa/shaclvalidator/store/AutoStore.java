@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.store;
+
+import be.fgov.bosa.shaclvalidator.helper.Decompressor;
+import be.fgov.bosa.shaclvalidator.helper.MemoryBudget;
+import be.fgov.bosa.shaclvalidator.helper.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper for choosing between an in-memory and a disk-based store.
+ *
+ * The number of triples is estimated based upon the size of the file and the average size of a triple,
+ * which is measured on the first part of a local file, or a typical value for the format otherwise.
+ *
+ * @author Bart Hanssens
+ */
+public class AutoStore {
+	private final static Logger LOG = LoggerFactory.getLogger(AutoStore.class);
+
+	// rough estimate of the heap needed per triple in a memory store, including the SHACL Sail
+	public final static long BYTES_PER_TRIPLE = 400;
+	// default heap budget for a memory store, compared to the maximum heap
+	public final static double DEFAULT_BUDGET = 0.6;
+
+	private final static int SAMPLE = 1024 * 1024;
+
+	/**
+	 * Get the typical size of a triple in a format
+	 *
+	 * @param format RDF format or null
+	 * @return number of bytes
+	 */
+	private static int typicalSize(RDFFormat format) {
+		if (RDFFormat.NTRIPLES.equals(format) || RDFFormat.NQUADS.equals(format)) {
+			return 130;
+		}
+		if (RDFFormat.TURTLE.equals(format) || RDFFormat.TRIG.equals(format)) {
+			return 60;
+		}
+		if (RDFFormat.RDFXML.equals(format) || RDFFormat.JSONLD.equals(format)) {
+			return 150;
+		}
+		return 100;
+	}
+
+	/**
+	 * Measure the average size of a triple by parsing the first part of a local file.
+	 * The sample is cut at an arbitrary position, so the last statement usually can't be parsed.
+	 *
+	 * @param location location of a local file
+	 * @param format RDF format
+	 * @return number of bytes, or -1 when the sample could not be parsed
+	 */
+	private static double sample(URL location, RDFFormat format) {
+		byte[] buf;
+		try (InputStream is = location.openStream()) {
+			buf = is.readNBytes(SAMPLE);
+		} catch (IOException ioe) {
+			return -1;
+		}
+		long[] count = new long[1];
+		RDFParser parser = Rio.createParser(format);
+		parser.setRDFHandler(new AbstractRDFHandler() {
+			@Override
+			public void handleStatement(Statement st) {
+				count[0]++;
+			}
+		});
+		try {
+			parser.parse(new ByteArrayInputStream(buf));
+		} catch (IOException | RDFParseException e) {
+			// expected, since the sample is cut
+		}
+		return (count[0] > 0) ? (double) buf.length / count[0] : -1;
+	}
+
+	/**
+	 * Estimate the number of triples in a file
+	 *
+	 * @param location location of the file
+	 * @param format RDF format, or null when unknown (e.g. zip files)
+	 * @return number of triples, or -1 when the size of the file is unknown
+	 */
+	public static long estimateTriples(URL location, RDFFormat format) {
+		long length = Util.contentLength(location);
+		if (length < 0) {
+			return -1;
+		}
+		boolean compressed = Decompressor.isCompressed(location.getFile());
+		if (compressed) {
+			length *= MemoryBudget.COMPRESSION;
+		}
+		double size = (!compressed && format != null && "file".equals(location.getProtocol()))
+							? sample(location, format) : -1;
+		if (size <= 0) {
+			size = typicalSize(format);
+		}
+		long triples = (long) (length / size);
+		LOG.info("Estimated {} triples in {} ({} bytes, {} bytes per triple)", triples, location, length,
+					Math.round(size));
+		return triples;
+	}
+
+	/**
+	 * Get the default heap budget for an in-memory store
+	 *
+	 * @return number of bytes
+	 */
+	public static long defaultBudget() {
+		return (long) (Runtime.getRuntime().maxMemory() * DEFAULT_BUDGET);
+	}
+}
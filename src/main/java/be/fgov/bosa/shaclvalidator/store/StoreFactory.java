@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.store;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.rdf4j.sail.NotifyingSail;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.eclipse.rdf4j.sail.nativerdf.NativeStore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Create the store backing the SHACL Sail
+ * 
+ * @author Bart Hanssens
+ */
+public class StoreFactory {
+	private final static Logger LOG = LoggerFactory.getLogger(StoreFactory.class);
+
+	public final static String DEFAULT_INDEXES = "spoc,posc";
+
+	/**
+	 * Get or create the directory for a disk-based store.
+	 * 
+	 * Unless the store is kept, a new temporary directory is created (inside the directory of the settings, if any),
+	 * so removing the store afterwards never removes files that were already there.
+	 * 
+	 * @param settings store settings
+	 * @return directory or null when the store is not (yet) disk-based
+	 * @throws IOException 
+	 */
+	public static Path createDirectory(StoreSettings settings) throws IOException {
+		if (settings.type() == StoreType.MEMORY || settings.type() == StoreType.AUTO) {
+			return null;
+		}
+		if (settings.dir() == null) {
+			return Files.createTempDirectory("shaclvalidator");
+		}
+		Path dir = Files.createDirectories(settings.dir());
+		return settings.keep() ? dir : Files.createTempDirectory(dir, "store");
+	}
+
+	/**
+	 * Create the store
+	 * 
+	 * @param settings store settings
+	 * @param dir directory of a disk-based store
+	 * @return store
+	 */
+	public static NotifyingSail createStore(StoreSettings settings, Path dir) {
+		if (settings.type() == StoreType.MEMORY || settings.type() == StoreType.AUTO) {
+			return new MemoryStore();
+		}
+
+		LOG.info("Using native store in {}, indexes {}", dir, settings.indexes());
+		NativeStore store = new NativeStore(dir.toFile(), settings.indexes());
+		if (settings.valueCacheSize() > 0) {
+			store.setValueCacheSize(settings.valueCacheSize());
+		}
+		if (settings.valueIDCacheSize() > 0) {
+			store.setValueIDCacheSize(settings.valueIDCacheSize());
+		}
+		return store;
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023, FPS BOSA
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package be.fgov.bosa.shaclvalidator.store;
+
+import java.nio.file.Path;
+
+/**
+ * Settings for the store backing the SHACL Sail
+ * 
+ * @param type type of store
+ * @param dir directory of a disk-based store, or null for a temporary directory
+ * @param indexes triple indexes of a native store (e.g. "spoc,posc")
+ * @param valueCacheSize value cache size of a native store, or 0 for the default
+ * @param valueIDCacheSize value ID cache size of a native store, or 0 for the default
+ * @param keep keep the directory of a disk-based store after closing, and use the directory as is
+ *             instead of creating a temporary directory inside it
+ * 
+ * @author Bart Hanssens
+ */
+public record StoreSettings(StoreType type, Path dir, String indexes, int valueCacheSize, int valueIDCacheSize, 
+							boolean keep) {
+
+	/**
+	 * Default settings, using an in-memory store
+	 * 
+	 * @return settings
+	 */
+	public static StoreSettings memory() {
+		return new StoreSettings(StoreType.MEMORY, null, StoreFactory.DEFAULT_INDEXES, 0, 0, false);
+	}
+
+	/**
+	 * Same settings, but using a native store
+	 * 
+	 * @return settings
+	 */
+	public StoreSettings asNative() {
+		return new StoreSettings(StoreType.NATIVE, dir, indexes, valueCacheSize, valueIDCacheSize, keep);
+	}
+}